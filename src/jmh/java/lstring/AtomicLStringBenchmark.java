@@ -0,0 +1,73 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// reader throughput on one shared AtomicLString, alone (readOnly) and with a
+// writer publishing new versions the whole time (readWrite); the reader
+// scores of the two groups should match, since readers never wait
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AtomicLStringBenchmark {
+
+  @Param({"1000", "1000000"})
+  int size;
+
+  AtomicLString lString;
+  LString insert;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(size);
+    char[] chars = new char[size];
+    for (int i = 0; i < size; i++) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    lString = new AtomicLString(new String(chars));
+    insert = new LString("xyzzy");
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+
+    int index(int size) {
+      next = (next + 7919) % size;
+      return next;
+    }
+  }
+
+  @Benchmark
+  @Group("readOnly")
+  @GroupThreads(3)
+  public char readOnlyReader(Cursor cursor) {
+    return lString.charAt(cursor.index(size));
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(3)
+  public char readWriteReader(Cursor cursor) {
+    return lString.charAt(cursor.index(size));
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(1)
+  public void readWriteWriter(Cursor cursor) {
+    // insert then delete, so the length stays put
+    int index = cursor.index(size);
+    lString.replace(index, index, insert);
+    lString.replace(index, index + 5, PersistentLString.EMPTY);
+  }
+
+}
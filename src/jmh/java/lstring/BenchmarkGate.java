@@ -0,0 +1,115 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// compares a JMH csv result file against a stored baseline and exits with
+// status 1 if any benchmark got slower by more than the allowed percentage
+//   usage: BenchmarkGate results.csv baseline.csv maxRegressionPercent [update]
+// update = true stores the results as the new baseline instead; with no
+// baseline stored the gate fails rather than pass against nothing
+public class BenchmarkGate {
+
+  public static void main(String[] args) throws IOException {
+    Path results = Paths.get(args[0]);
+    Path baseline = Paths.get(args[1]);
+    double maxRegression = Double.parseDouble(args[2]);
+    boolean update = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+    if (update) {
+      Files.createDirectories(baseline.toAbsolutePath().getParent());
+      Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+      System.out.println("Stored " + results + " as benchmark baseline " + baseline);
+      return;
+    }
+    if (!Files.exists(baseline)) {
+      System.out.println("No benchmark baseline at " + baseline
+          + "; store one with -Dbench.updateBaseline=true on the machine that runs the gate");
+      System.exit(1);
+    }
+
+    Map<String, double[]> before = read(baseline);
+    Map<String, double[]> after = read(results);
+    int failures = 0;
+    for (Map.Entry<String, double[]> entry : after.entrySet()) {
+      double[] old = before.get(entry.getKey());
+      if (old == null) {
+        System.out.println("NEW   " + entry.getKey());
+        continue;
+      }
+      // old[1] and now[1] are 1 when higher scores are better (throughput)
+      double[] now = entry.getValue();
+      double change = (now[0] - old[0]) / old[0] * 100;
+      double regression = (old[1] == 1) ? -change : change;
+      boolean failed = regression > maxRegression;
+      if (failed) {
+        failures++;
+      }
+      System.out.printf("%s %s: %.3f -> %.3f (%+.1f%%)%n",
+          failed ? "SLOW " : "OK   ", entry.getKey(), old[0], now[0], change);
+    }
+    if (failures > 0) {
+      System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", failures, maxRegression);
+      System.exit(1);
+    }
+  }
+
+  // map "benchmark [params]" to {score, 1 if higher is better else 0},
+  // skipping secondary metrics such as the GC profiler's
+  private static Map<String, double[]> read(Path csv) throws IOException {
+    List<String> lines = Files.readAllLines(csv);
+    List<String> header = split(lines.get(0));
+    int nameColumn = header.indexOf("Benchmark");
+    int modeColumn = header.indexOf("Mode");
+    int scoreColumn = header.indexOf("Score");
+    Map<String, double[]> scores = new LinkedHashMap<>();
+    for (String line : lines.subList(1, lines.size())) {
+      List<String> fields = split(line);
+      String name = fields.get(nameColumn);
+      if (name.contains(":")) {
+        continue;
+      }
+      StringBuilder key = new StringBuilder(name);
+      for (int i = 0; i < header.size(); i++) {
+        if (header.get(i).startsWith("Param: ")) {
+          key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+        }
+      }
+      boolean higherIsBetter = fields.get(modeColumn).equals("thrpt");
+      scores.put(key.toString(),
+          new double[] {Double.parseDouble(fields.get(scoreColumn)), higherIsBetter ? 1 : 0});
+    }
+    return scores;
+  }
+
+  // split one csv line, dropping the quotes JMH puts around each field
+  private static List<String> split(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char ch = line.charAt(i);
+      if (ch == '"') {
+        quoted = !quoted;
+      } else if (ch == ',' && !quoted) {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(ch);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+}
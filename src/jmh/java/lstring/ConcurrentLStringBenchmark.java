@@ -0,0 +1,67 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.*;
+
+// setCharAt/charAt throughput when every thread works in its own region of
+// one shared ConcurrentLString; run with -t 1, 2, 4, ... to see how it scales
+// with cores, e.g. -Dbench.args="ConcurrentLStringBenchmark -t 4"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentLStringBenchmark {
+
+  // chars each thread owns
+  static final int REGION = 1 << 16;
+  // most threads the shared string has room for
+  static final int MAX_THREADS = 64;
+
+  @State(Scope.Benchmark)
+  public static class Shared {
+    ConcurrentLString lString;
+    final AtomicInteger nextRegion = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      StringBuilder sb = new StringBuilder(REGION * MAX_THREADS);
+      for (int i = 0; i < REGION * MAX_THREADS; i++) {
+        sb.append((char) ('a' + i % 26));
+      }
+      lString = new ConcurrentLString(sb.toString());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Region {
+    int start;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Shared shared) {
+      start = (shared.nextRegion.getAndIncrement() % MAX_THREADS) * REGION;
+    }
+
+    int index() {
+      next = (next + 127) & (REGION - 1);
+      return start + next;
+    }
+  }
+
+  @Benchmark
+  public void setCharAt(Shared shared, Region region) {
+    shared.lString.setCharAt(region.index(), 'q');
+  }
+
+  @Benchmark
+  public char charAt(Shared shared, Region region) {
+    return shared.lString.charAt(region.index());
+  }
+
+}
@@ -0,0 +1,260 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// throughput of the LString operations at sizes from 10 chars to 10M chars,
+// each next to the String or StringBuilder call that does the same job;
+// main() runs the whole suite with the GC profiler to report allocation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LStringBenchmark {
+
+  @Param({"10", "1000", "100000", "10000000"})
+  int size;
+
+  // number of random positions visited per random-access invocation
+  static final int RANDOM_READS = 1024;
+
+  // number of patterns the multi-pattern search looks for
+  static final int KEYWORDS = 100;
+
+  String text;
+  String sameText;
+  LString lString;
+  LString indexedLString;
+  LString sameLString;
+  LString lastDiffers;
+  String lastDiffersString;
+  StringBuilder builder;
+  LString insert;
+  LString empty;
+  String insertString;
+  int[] positions;
+  LString pattern;
+  String patternString;
+  LStringMatcher keywords;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(size);
+    char[] chars = new char[size];
+    for (int i = 0; i < size; i++) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    text = new String(chars);
+    sameText = new String(chars);
+    lString = new LString(text);
+    indexedLString = new LString(text);
+    indexedLString.setIndexed(true);
+    sameLString = new LString(text);
+    chars[size - 1] = '!';
+    lastDiffersString = new String(chars);
+    lastDiffers = new LString(lastDiffersString);
+    builder = new StringBuilder(text);
+    insertString = "xyzzy";
+    insert = new LString(insertString);
+    empty = new LString();
+    //the last 16 chars (or all of a shorter text), so a search runs to the end
+    patternString = text.substring(Math.max(0, size - 16));
+    pattern = new LString(patternString);
+    //KEYWORDS 6-char keywords taken from the text, so some of them match
+    LString[] taken = new LString[KEYWORDS];
+    for (int i = 0; i < KEYWORDS; i++) {
+      int at = random.nextInt(Math.max(1, size - 6));
+      taken[i] = new LString(text.substring(at, Math.min(size, at + 6)));
+    }
+    keywords = new LStringMatcher(taken);
+    positions = new int[RANDOM_READS];
+    for (int i = 0; i < RANDOM_READS; i++) {
+      positions[i] = random.nextInt(size);
+    }
+  }
+
+  @Benchmark
+  public LString construct() {
+    return new LString(text);
+  }
+
+  @Benchmark
+  public StringBuilder constructStringBuilder() {
+    return new StringBuilder(text);
+  }
+
+  @Benchmark
+  public String toStringFresh() {
+    //setCharAt drops the cached String, so this measures a real conversion
+    lString.setCharAt(0, text.charAt(0));
+    return lString.toString();
+  }
+
+  @Benchmark
+  public String toStringStringBuilder() {
+    return builder.toString();
+  }
+
+  @Benchmark
+  public int charAtSequential() {
+    int sum = 0;
+    for (int i = 0; i < size; i++) {
+      sum += lString.charAt(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int charAtSequentialString() {
+    int sum = 0;
+    for (int i = 0; i < size; i++) {
+      sum += text.charAt(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int charAtRandom() {
+    int sum = 0;
+    for (int index : positions) {
+      sum += lString.charAt(index);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int charAtRandomString() {
+    int sum = 0;
+    for (int index : positions) {
+      sum += text.charAt(index);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public void setCharAt() {
+    for (int index : positions) {
+      lString.setCharAt(index, 'q');
+    }
+  }
+
+  @Benchmark
+  public void setCharAtStringBuilder() {
+    for (int index : positions) {
+      builder.setCharAt(index, 'q');
+    }
+  }
+
+  @Benchmark
+  public LString substring() {
+    return lString.substring(size / 4, size - size / 4);
+  }
+
+  @Benchmark
+  public String substringString() {
+    return text.substring(size / 4, size - size / 4);
+  }
+
+  //each replace benchmark splices insert in and takes it out again, so the
+  //LString keeps its size from one invocation to the next
+  @Benchmark
+  public LString replacePrepend() {
+    lString.replace(0, 0, insert);
+    return lString.replace(0, insert.length(), empty);
+  }
+
+  //taking insert off the end again has to find position size, which
+  //indexedLString does by binary search rather than a walk from front, so
+  //neither half costs more as the LString grows
+  @Benchmark
+  public LString replaceAppend() {
+    indexedLString.replace(size, size, insert);
+    return indexedLString.replace(size, size + insert.length(), empty);
+  }
+
+  @Benchmark
+  public LString replaceMiddle() {
+    int mid = size / 2;
+    lString.replace(mid, mid, insert);
+    return lString.replace(mid, mid + insert.length(), empty);
+  }
+
+  @Benchmark
+  public StringBuilder replaceMiddleStringBuilder() {
+    int mid = size / 2;
+    builder.insert(mid, insertString);
+    return builder.delete(mid, mid + insertString.length());
+  }
+
+  @Benchmark
+  public int compareTo() {
+    return lString.compareTo(lastDiffers);
+  }
+
+  @Benchmark
+  public int compareToString() {
+    return text.compareTo(lastDiffersString);
+  }
+
+  @Benchmark
+  public boolean equalsSame() {
+    return lString.equals(sameLString);
+  }
+
+  @Benchmark
+  public boolean equalsSameString() {
+    //a distinct String with the same chars, so equals cannot short-cut on identity
+    return text.equals(sameText);
+  }
+
+  @Benchmark
+  public int indexOf() {
+    return lString.indexOf(pattern);
+  }
+
+  @Benchmark
+  public int indexOfString() {
+    return text.indexOf(patternString);
+  }
+
+  @Benchmark
+  public int findDisjointKeywords() {
+    return keywords.findDisjoint(lString).size();
+  }
+
+  @Benchmark
+  public long charsCount() {
+    return lString.chars().filter(ch -> ch == 'q').count();
+  }
+
+  @Benchmark
+  public long charsCountParallel() {
+    return lString.chars().parallel().filter(ch -> ch == 'q').count();
+  }
+
+  @Benchmark
+  public long charsCountString() {
+    return text.chars().filter(ch -> ch == 'q').count();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(LStringBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+}
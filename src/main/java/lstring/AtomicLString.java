@@ -0,0 +1,88 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// LString for read-mostly sharing between threads. The current version is
+// an immutable PersistentLString held in an AtomicReference: readers just
+// get() it and never block or retry, and writers build the edited version
+// off to the side (copying only the rope path they change) and publish it
+// with compareAndSet, trying again from the new version if another writer
+// got there first.
+public class AtomicLString implements Comparable<AtomicLString> {
+
+  private final AtomicReference<PersistentLString> current;
+
+  public AtomicLString() {
+    current = new AtomicReference<>(PersistentLString.EMPTY);
+  }
+
+  //Construct AtomicLString object that is a copy of a String
+  public AtomicLString(String original) {
+    current = new AtomicReference<>(new PersistentLString(original));
+  }
+
+  //the current version; it never changes, so it is a consistent snapshot
+  public PersistentLString snapshot() {
+    return current.get();
+  }
+
+  public int length() {
+    return current.get().length();
+  }
+
+  public char charAt(int index) {
+    return current.get().charAt(index);
+  }
+
+  public String toString() {
+    return current.get().toString();
+  }
+
+  public void setCharAt(int index, char ch) {
+    PersistentLString old;
+    PersistentLString updated;
+    do {
+      old = current.get();
+      updated = old.withCharAt(index, ch);
+    } while (!current.compareAndSet(old, updated));
+  }
+
+  public AtomicLString replace(int start, int end, PersistentLString lStr) {
+    PersistentLString old;
+    PersistentLString updated;
+    do {
+      old = current.get();
+      updated = old.withReplace(start, end, lStr);
+    } while (!current.compareAndSet(old, updated));
+    return this;
+  }
+
+  public AtomicLString replace(int start, int end, LString lStr) {
+    return replace(start, end, PersistentLString.of(lStr));
+  }
+
+  public int compareTo(AtomicLString anotherLString) {
+    // all comparisons lexicographical, ie B < BB < Ba < a
+    return snapshot().compareTo(anotherLString.snapshot());
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof AtomicLString)) {
+      return false;
+    }
+    return snapshot().equals(((AtomicLString) other).snapshot());
+  }
+
+  @Override
+  public int hashCode() {
+    return snapshot().hashCode();
+  }
+
+}
@@ -0,0 +1,325 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// LString that can be shared between threads. The chars are kept in chunks
+// of up to chunkSize chars, and chunk i is guarded by read/write lock
+// i % stripes, so charAt and setCharAt on different regions of the string
+// take different locks and scale across cores. Where the chunks start is
+// kept in an immutable table, read without any shared lock: an operation
+// locks the stripes of the chunks it needs and then checks the table is
+// still the current one, trying again if not. Only a replace that moves
+// positions publishes a new table, and it holds every stripe's write lock
+// while it does. Each operation takes effect atomically at some point
+// while it holds its locks.
+public class ConcurrentLString implements Comparable<ConcurrentLString> {
+
+  static final int DEFAULT_CHUNK_SIZE = 1024;
+  static final int DEFAULT_STRIPES = 64;
+
+  private final int chunkSize;
+  private final ReentrantReadWriteLock[] stripes;
+
+  // the current chunk table, swapped only with every stripe write-locked
+  private volatile Table table;
+
+  // chunks[i] holds counts[i] chars starting at position starts[i]. Nothing
+  // here changes once the table is published apart from the chars in the
+  // chunks, which are guarded by the stripes; a new table shares the chunks
+  // a replace left alone
+  private static final class Table {
+    final char[][] chunks;
+    final int[] counts;
+    final int[] starts;
+    final int chunkCount;
+    final int length;
+
+    Table(char[][] chunks, int[] counts, int[] starts, int chunkCount, int length) {
+      this.chunks = chunks;
+      this.counts = counts;
+      this.starts = starts;
+      this.chunkCount = chunkCount;
+      this.length = length;
+    }
+
+    //the chunk holding index, found by binary search over starts
+    int chunkOf(int index) {
+      int i = Arrays.binarySearch(starts, 0, chunkCount, index);
+      return (i < 0) ? -i - 2 : i;
+    }
+
+    //copy chars start..end-1 into dst at dstBegin, returning the position
+    //after the last one written; the caller holds the needed locks
+    int copyOut(int start, int end, char[] dst, int dstBegin) {
+      int pos = start;
+      while (pos < end) {
+        int chunk = chunkOf(pos);
+        int offset = pos - starts[chunk];
+        int n = Math.min(counts[chunk] - offset, end - pos);
+        System.arraycopy(chunks[chunk], offset, dst, dstBegin, n);
+        dstBegin += n;
+        pos += n;
+      }
+      return dstBegin;
+    }
+
+    void checkIndex(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+      }
+    }
+
+    void checkRange(int start, int end) {
+      if (start < 0 || start > end || end > length) {
+        throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+      }
+    }
+  }
+
+  public ConcurrentLString() {
+    this("", DEFAULT_CHUNK_SIZE, DEFAULT_STRIPES);
+  }
+
+  //Construct ConcurrentLString object that is a copy of a String
+  public ConcurrentLString(String original) {
+    this(original, DEFAULT_CHUNK_SIZE, DEFAULT_STRIPES);
+  }
+
+  public ConcurrentLString(String original, int chunkSize, int stripes) {
+    if (chunkSize < 1 || stripes < 1) {
+      throw new IllegalArgumentException("chunk size " + chunkSize + " and stripes " + stripes + " must be positive");
+    }
+    this.chunkSize = chunkSize;
+    this.stripes = new ReentrantReadWriteLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new ReentrantReadWriteLock();
+    }
+    char[] chars = original.toCharArray();
+    //the volatile write publishes the chunks to other threads
+    table = rebuild(null, 0, chars, 0, chars.length, 0);
+  }
+
+  public int length() {
+    return table.length;
+  }
+
+  public char charAt(int index) {
+    while (true) {
+      Table t = table;
+      t.checkIndex(index);
+      int chunk = t.chunkOf(index);
+      Lock lock = stripeOf(chunk).readLock();
+      lock.lock();
+      try {
+        if (table == t) {
+          return t.chunks[chunk][index - t.starts[chunk]];
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  public void setCharAt(int index, char ch) {
+    while (true) {
+      Table t = table;
+      t.checkIndex(index);
+      int chunk = t.chunkOf(index);
+      Lock lock = stripeOf(chunk).writeLock();
+      lock.lock();
+      try {
+        if (table == t) {
+          t.chunks[chunk][index - t.starts[chunk]] = ch;
+          return;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  public ConcurrentLString substring(int start, int end) {
+    char[] chars;
+    do {
+      Table t = table;
+      t.checkRange(start, end);
+      chars = read(t, start, end);
+    } while (chars == null);
+    return new ConcurrentLString(new String(chars), chunkSize, stripes.length);
+  }
+
+  public ConcurrentLString replace(int start, int end, LString lStr) {
+    char[] replacement = lStr.toString().toCharArray();
+    if (replacement.length == end - start) {
+      //positions stay put, so only the chunks covering start..end-1 are locked
+      while (true) {
+        Table t = table;
+        t.checkRange(start, end);
+        if (start == end) {
+          return this;
+        }
+        Lock[] locks = lockSpan(t.chunkOf(start), t.chunkOf(end - 1), false);
+        try {
+          if (table == t) {
+            for (int i = start; i < end; i++) {
+              int chunk = t.chunkOf(i);
+              t.chunks[chunk][i - t.starts[chunk]] = replacement[i - start];
+            }
+            return this;
+          }
+        } finally {
+          unlock(locks);
+        }
+      }
+    }
+    Lock[] locks = lockSpan(0, stripes.length - 1, false);
+    try {
+      Table t = table;
+      t.checkRange(start, end);
+      //re-chunk only the chunks from the one holding start to the one
+      //holding end (the last chunk if either is length), with lStr in between
+      int first = 0;
+      int last = -1;
+      int from = 0;
+      int to = 0;
+      if (t.chunkCount > 0) {
+        first = t.chunkOf(Math.min(start, t.length - 1));
+        last = t.chunkOf(Math.min(end, t.length - 1));
+        from = t.starts[first];
+        to = t.starts[last] + t.counts[last];
+      }
+      char[] middle = new char[(start - from) + replacement.length + (to - end)];
+      int pos = t.copyOut(from, start, middle, 0);
+      System.arraycopy(replacement, 0, middle, pos, replacement.length);
+      t.copyOut(end, to, middle, pos + replacement.length);
+      table = rebuild(t, first, middle, 0, middle.length, last - first + 1);
+    } finally {
+      unlock(locks);
+    }
+    return this;
+  }
+
+  public String toString() {
+    return new String(snapshot());
+  }
+
+  public int compareTo(ConcurrentLString anotherLString) {
+    // all comparisons lexicographical, ie B < BB < Ba < a
+    //each side is copied under its own locks, never both at once
+    char[] mine = snapshot();
+    char[] theirs = (anotherLString == this) ? mine : anotherLString.snapshot();
+    return Arrays.compare(mine, theirs);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ConcurrentLString)) {
+      return false;
+    }
+    return compareTo((ConcurrentLString) other) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    //same value as toString().hashCode()
+    int h = 0;
+    for (char ch : snapshot()) {
+      h = 31 * h + ch;
+    }
+    return h;
+  }
+
+  //copy of all the chars, taken atomically
+  private char[] snapshot() {
+    char[] chars;
+    do {
+      Table t = table;
+      chars = read(t, 0, t.length);
+    } while (chars == null);
+    return chars;
+  }
+
+  //copy chars start..end-1 of t under the read locks of the chunks holding
+  //them, or return null if t has been replaced, for the caller to try again
+  private char[] read(Table t, int start, int end) {
+    char[] result = new char[end - start];
+    if (start == end) {
+      return result;
+    }
+    Lock[] locks = lockSpan(t.chunkOf(start), t.chunkOf(end - 1), true);
+    try {
+      if (table != t) {
+        return null;
+      }
+      t.copyOut(start, end, result, 0);
+    } finally {
+      unlock(locks);
+    }
+    return result;
+  }
+
+  //a table like old (null for an empty one) with its dropped chunks from
+  //first on replaced by chunks holding chars off..off+n-1 of src
+  private Table rebuild(Table old, int first, char[] src, int off, int n, int dropped) {
+    int oldCount = (old == null) ? 0 : old.chunkCount;
+    int added = (n + chunkSize - 1) / chunkSize;
+    int newCount = oldCount - dropped + added;
+    char[][] newChunks = new char[Math.max(newCount, 1)][];
+    int[] newCounts = new int[newChunks.length];
+    if (old != null) {
+      System.arraycopy(old.chunks, 0, newChunks, 0, first);
+      System.arraycopy(old.counts, 0, newCounts, 0, first);
+      int tail = oldCount - first - dropped;
+      System.arraycopy(old.chunks, first + dropped, newChunks, first + added, tail);
+      System.arraycopy(old.counts, first + dropped, newCounts, first + added, tail);
+    }
+    for (int i = 0; i < added; i++) {
+      int k = Math.min(chunkSize, n - i * chunkSize);
+      newChunks[first + i] = Arrays.copyOfRange(src, off + i * chunkSize, off + i * chunkSize + k);
+      newCounts[first + i] = k;
+    }
+    int[] newStarts = new int[newChunks.length];
+    int pos = 0;
+    for (int i = 0; i < newCount; i++) {
+      newStarts[i] = pos;
+      pos += newCounts[i];
+    }
+    return new Table(newChunks, newCounts, newStarts, newCount, pos);
+  }
+
+  //lock the stripes of chunks first..last, each once and in stripe order so
+  //that two spans can never wait on each other
+  private Lock[] lockSpan(int first, int last, boolean forReading) {
+    int n = Math.min(last - first + 1, stripes.length);
+    int[] ids = new int[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = (first + i) % stripes.length;
+    }
+    Arrays.sort(ids);
+    Lock[] locks = new Lock[n];
+    for (int i = 0; i < n; i++) {
+      locks[i] = forReading ? stripes[ids[i]].readLock() : stripes[ids[i]].writeLock();
+      locks[i].lock();
+    }
+    return locks;
+  }
+
+  private static void unlock(Lock[] locks) {
+    for (int i = locks.length - 1; i >= 0; i--) {
+      locks[i].unlock();
+    }
+  }
+
+  private ReentrantReadWriteLock stripeOf(int chunk) {
+    return stripes[chunk % stripes.length];
+  }
+
+}
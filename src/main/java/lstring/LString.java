@@ -0,0 +1,1926 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+public class LString implements CharSequence, Comparable<LString>, Iterable<Character> {
+
+  // number of chars each node holds unless a chunk size is given
+  static final int DEFAULT_CHUNK_SIZE = 64;
+
+  // most bytes of a file mapped at once by mapFile and MappedLString
+  static final int MAP_WINDOW = 1 << 30;
+
+  // chars gathered from the nodes before each write by writeTo
+  static final int WRITE_BUFFER = 8192;
+
+  // patterns at least this long are searched for with Boyer-Moore-Horspool,
+  // shorter ones by trying each position in turn
+  static final int HORSPOOL_MIN_PATTERN = 4;
+
+  // save format: "LSTR", then the version, length, chunk size and node
+  // count as ints, then a table with a byte (LATIN1 or UTF16) and an int
+  // count for each node, then each node's chars as count Latin-1 bytes or
+  // 2 * count UTF-16BE bytes, all in chain order
+  static final int SAVE_MAGIC = 0x4c535452;
+  static final int SAVE_VERSION = 1;
+  static final byte LATIN1 = 0;
+  static final byte UTF16 = 1;
+
+  // each node holds a chunk of up to capacity() chars, of which the first
+  // count are in use, so a char no longer costs a whole node. While every
+  // char in it fits in a byte the chunk is kept in latin1 (and data is
+  // null), like the JDK's compact strings; the first wider char stored
+  // widens it to UTF-16 in data (and latin1 becomes null)
+  private static class node {
+    byte[] latin1;
+    char[] data;
+    int count;
+    node next;
+
+    public node(int capacity) {
+      latin1 = new byte[capacity];
+    }
+
+    int capacity() {
+      return (latin1 != null) ? latin1.length : data.length;
+    }
+
+    char get(int i) {
+      return (latin1 != null) ? (char) (latin1[i] & 0xff) : data[i];
+    }
+
+    void set(int i, char ch) {
+      if (latin1 != null) {
+        if (ch <= 0xff) {
+          latin1[i] = (byte) ch;
+          return;
+        }
+        widen(count);
+      }
+      data[i] = ch;
+    }
+
+    //switch the chunk to UTF-16, keeping its first used chars
+    void widen(int used) {
+      data = new char[latin1.length];
+      for (int i = 0; i < used; i++) {
+        data[i] = (char) (latin1[i] & 0xff);
+      }
+      latin1 = null;
+    }
+
+    //copy chars from..to-1 into dst starting at dstBegin
+    void getChars(int from, int to, char[] dst, int dstBegin) {
+      if (latin1 != null) {
+        for (int i = from; i < to; i++) {
+          dst[dstBegin++] = (char) (latin1[i] & 0xff);
+        }
+      } else {
+        System.arraycopy(data, from, dst, dstBegin, to - from);
+      }
+    }
+
+    //store n chars of src starting at off at position at, widening the
+    //chunk if one of them needs it; the caller has checked there is room
+    void put(int at, char[] src, int off, int n) {
+      if (latin1 != null) {
+        int i = 0;
+        while (i < n && src[off + i] <= 0xff) {
+          latin1[at + i] = (byte) src[off + i];
+          i++;
+        }
+        if (i == n) {
+          return;
+        }
+        widen(at + i);
+        at += i;
+        off += i;
+        n -= i;
+      }
+      System.arraycopy(src, off, data, at, n);
+    }
+
+    void put(int at, CharSequence src, int off, int n) {
+      if (latin1 != null) {
+        int i = 0;
+        char ch;
+        while (i < n && (ch = src.charAt(off + i)) <= 0xff) {
+          latin1[at + i] = (byte) ch;
+          i++;
+        }
+        if (i == n) {
+          return;
+        }
+        widen(at + i);
+        at += i;
+        off += i;
+        n -= i;
+      }
+      if (src instanceof String) {
+        ((String) src).getChars(off, off + n, data, at);
+      } else {
+        for (int i = 0; i < n; i++) {
+          data[at + i] = src.charAt(off + i);
+        }
+      }
+    }
+
+    void put(int at, node src, int off, int n) {
+      if (src.latin1 == null) {
+        put(at, src.data, off, n);
+      } else if (latin1 != null) {
+        System.arraycopy(src.latin1, off, latin1, at, n);
+      } else {
+        for (int i = 0; i < n; i++) {
+          data[at + i] = (char) (src.latin1[off + i] & 0xff);
+        }
+      }
+    }
+  }
+
+  int length;
+  node front;
+  final int chunkSize;
+
+  // last node of the chain and the number of nodes in it, so appends need
+  // not walk to the end first
+  node tail;
+  int nodeCount;
+
+  // result of the last toString(), dropped whenever the chars change
+  private String cached;
+
+  // String-compatible polynomial hash, kept up to date by setCharAt and
+  // recomputed on the next hashCode() after replace
+  private int hash;
+  private boolean hashValid;
+
+  // optional position index over the chain: chunkIndex[i] is the i-th node
+  // and chunkStart[i] the position of its first char, so a node can be found
+  // by binary search. replace patches the entries it changes and shifts the
+  // later starts; other edits drop it, and it is rebuilt on the next lookup
+  private boolean indexed;
+  private node[] chunkIndex;
+  private int[] chunkStart;
+  private int indexSize;
+
+  // node last returned by locate and the position of its first char, so
+  // lookups at or after it walk on from there instead of from front
+  private node lastNode;
+  private int lastStart;
+
+  // number of replace calls, so cursors can tell the chain changed under them
+  private int modCount;
+
+  // where new nodes come from and nodes dropped by replace go, if set
+  private NodePool pool;
+
+  // LStrings at least this long are split up by parallelEquals,
+  // parallelHash and parallel streams over chars(); shorter ones are
+  // walked by the calling thread
+  private static volatile int parallelThreshold = 1 << 20;
+
+  public LString() {
+    //construct an LString object, which will represent an empty list of chars
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  //construct an empty LString whose nodes hold up to chunkSize chars each
+  public LString(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunk size " + chunkSize + " is not positive");
+    }
+    this.chunkSize = chunkSize;
+    front = null;
+  }
+
+  //Construct LString object that is a copy of a String
+  public LString(String original) {
+    this(original, DEFAULT_CHUNK_SIZE);
+  }
+
+  //Construct LString object that is a copy of a String, chunkSize chars per node
+  public LString(String original, int chunkSize) {
+    this(chunkSize);
+    append(null, original, 0, original.length());
+  }
+
+  //return a new LString holding a copy of chars
+  public static LString of(char[] chars) {
+    return of(chars, 0, chars.length);
+  }
+
+  //return a new LString holding a copy of count chars of chars starting at offset
+  public static LString of(char[] chars, int offset, int count) {
+    Objects.checkFromIndexSize(offset, count, chars.length);
+    LString result = new LString();
+    result.append(null, chars, offset, count);
+    return result;
+  }
+
+  //return a new LString holding a copy of the chars of seq
+  public static LString of(CharSequence seq) {
+    LString result = new LString();
+    result.append(null, seq, 0, seq.length());
+    return result;
+  }
+
+  //return a new LString holding the text of a UTF-8 file
+  public static LString mapFile(Path path) throws IOException {
+    return mapFile(path, StandardCharsets.UTF_8);
+  }
+
+  //return a new LString holding the text of a file in charset. The file is
+  //memory-mapped a window at a time and decoded through a small buffer
+  //straight into the nodes, so the text is never on the heap twice.
+  //Malformed input becomes U+FFFD, as in new String(bytes, charset).
+  //MappedLString.open reads a file lazily instead
+  public static LString mapFile(Path path, Charset charset) throws IOException {
+    LString result = new LString();
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer out = CharBuffer.allocate(8192);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long pos = 0;
+      boolean last = false;
+      while (!last) {
+        long n = Math.min(size - pos, MAP_WINDOW);
+        last = pos + n == size;
+        MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, pos, n);
+        CoderResult cr;
+        do {
+          cr = decoder.decode(in, out, last);
+          result.drain(out, path);
+        } while (cr.isOverflow());
+        //a char cut off by the end of the window is decoded from the next one
+        pos += in.position();
+      }
+      while (decoder.flush(out).isOverflow()) {
+        result.drain(out, path);
+      }
+      result.drain(out, path);
+    }
+    return result;
+  }
+
+  //return a new LString holding everything left in reader, which is read
+  //bufSize chars at a time straight onto the end of the chain; the reader
+  //is not closed
+  public static LString read(Reader reader, int bufSize) throws IOException {
+    if (bufSize < 1) {
+      throw new IllegalArgumentException("buffer size " + bufSize + " is not positive");
+    }
+    LString result = new LString();
+    CharBuffer buf = CharBuffer.allocate(bufSize);
+    while (reader.read(buf) != -1) {
+      result.drain(buf, reader);
+    }
+    return result;
+  }
+
+  //append the chars to out, WRITE_BUFFER chars at a time, so no String of
+  //the whole LString is built
+  public void writeTo(Appendable out) throws IOException {
+    char[] buf = new char[WRITE_BUFFER];
+    int n = 0;
+    for (node curr = front; curr != null; curr = curr.next) {
+      int offset = 0;
+      while (offset < curr.count) {
+        int k = Math.min(curr.count - offset, buf.length - n);
+        curr.getChars(offset, offset + k, buf, n);
+        offset += k;
+        n += k;
+        if (n == buf.length) {
+          write(out, buf, n);
+          n = 0;
+        }
+      }
+    }
+    write(out, buf, n);
+  }
+
+  private static void write(Appendable out, char[] buf, int n) throws IOException {
+    if (out instanceof Writer) {
+      ((Writer) out).write(buf, 0, n);
+    } else if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(buf, 0, n);
+    } else {
+      out.append(CharBuffer.wrap(buf, 0, n));
+    }
+  }
+
+  //write the chars to channel encoded in charset, WRITE_BUFFER chars at a
+  //time; unmappable chars and unpaired surrogates become the charset's
+  //replacement, as in String.getBytes(charset). The channel is not closed
+  public void writeTo(WritableByteChannel channel, Charset charset) throws IOException {
+    CharsetEncoder encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer in = CharBuffer.allocate(WRITE_BUFFER);
+    ByteBuffer out = ByteBuffer.allocate((int) Math.ceil(WRITE_BUFFER * encoder.maxBytesPerChar()));
+    for (node curr = front; curr != null; curr = curr.next) {
+      int offset = 0;
+      while (offset < curr.count) {
+        int k = Math.min(curr.count - offset, in.remaining());
+        curr.getChars(offset, offset + k, in.array(), in.position());
+        in.position(in.position() + k);
+        offset += k;
+        if (!in.hasRemaining()) {
+          encode(encoder, in, out, false, channel);
+        }
+      }
+    }
+    encode(encoder, in, out, true, channel);
+    while (encoder.flush(out).isOverflow()) {
+      drain(out, channel);
+    }
+    drain(out, channel);
+  }
+
+  //encode the chars in in, writing the bytes to channel; a high surrogate
+  //at the end stays in in until the next call pairs it up
+  private static void encode(CharsetEncoder encoder, CharBuffer in, ByteBuffer out, boolean end,
+      WritableByteChannel channel) throws IOException {
+    in.flip();
+    while (encoder.encode(in, out, end).isOverflow()) {
+      drain(out, channel);
+    }
+    drain(out, channel);
+    in.compact();
+  }
+
+  private static void drain(ByteBuffer out, WritableByteChannel channel) throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+
+  //write this LString to path in the binary save format, keeping each
+  //node's chars and whether they are Latin-1 or UTF-16
+  public void save(Path path) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      buf.putInt(SAVE_MAGIC).putInt(SAVE_VERSION).putInt(length).putInt(chunkSize).putInt(nodeCount);
+      for (node curr = front; curr != null; curr = curr.next) {
+        if (buf.remaining() < 5) {
+          drain(buf, channel);
+        }
+        buf.put((curr.latin1 != null) ? LATIN1 : UTF16).putInt(curr.count);
+      }
+      for (node curr = front; curr != null; curr = curr.next) {
+        if (curr.latin1 != null) {
+          for (int i = 0; i < curr.count; ) {
+            if (!buf.hasRemaining()) {
+              drain(buf, channel);
+            }
+            int k = Math.min(curr.count - i, buf.remaining());
+            buf.put(curr.latin1, i, k);
+            i += k;
+          }
+        } else {
+          for (int i = 0; i < curr.count; ) {
+            if (buf.remaining() < 2) {
+              drain(buf, channel);
+            }
+            int k = Math.min(curr.count - i, buf.remaining() / 2);
+            buf.asCharBuffer().put(curr.data, i, k);
+            buf.position(buf.position() + 2 * k);
+            i += k;
+          }
+        }
+      }
+      drain(buf, channel);
+    }
+  }
+
+  //return a new LString read from a file written by save, with the same
+  //chunk size and nodes. The file is memory-mapped and each node's chars
+  //are bulk-copied out of the mapping into its array
+  public static LString load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < 20) {
+        throw new IOException(path + " is not a saved LString");
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 20);
+      if (header.getInt() != SAVE_MAGIC) {
+        throw new IOException(path + " is not a saved LString");
+      }
+      int version = header.getInt();
+      if (version != SAVE_VERSION) {
+        throw new IOException(path + " is saved LString version " + version + ", not " + SAVE_VERSION);
+      }
+      int length = header.getInt();
+      int chunkSize = header.getInt();
+      int nodeCount = header.getInt();
+      if (length < 0 || chunkSize < 1 || nodeCount < 0 || 20 + 5L * nodeCount > size) {
+        throw new IOException(path + " has a corrupt header");
+      }
+      LString result = new LString(chunkSize);
+      //the table and the payload are each read through a window that is
+      //mapped again whenever the next entry runs past its end
+      Window table = new Window(channel, 20);
+      Window payload = new Window(channel, 20 + 5L * nodeCount);
+      node last = null;
+      for (int n = 0; n < nodeCount; n++) {
+        ByteBuffer entry = table.next(5);
+        byte encoding = entry.get();
+        int count = entry.getInt();
+        if (count < 0 || (encoding != LATIN1 && encoding != UTF16) || result.length > length - count) {
+          throw new IOException(path + " has a corrupt chunk table");
+        }
+        node added = new node(Math.max(count, chunkSize));
+        if (encoding == LATIN1) {
+          payload.next(count).get(added.latin1, 0, count);
+        } else {
+          added.widen(0);
+          payload.next(2L * count).asCharBuffer().get(added.data, 0, count);
+        }
+        added.count = count;
+        if (last == null) {
+          result.front = added;
+        } else {
+          last.next = added;
+        }
+        last = added;
+        result.length += count;
+      }
+      if (result.length != length || payload.position() != size) {
+        throw new IOException(path + " does not hold the " + length + " chars its header gives");
+      }
+      result.tail = last;
+      result.nodeCount = nodeCount;
+      return result;
+    }
+  }
+
+  //reads a file in order through memory-mapped windows of up to MAP_WINDOW
+  //bytes, starting at the given position
+  private static final class Window {
+    private final FileChannel channel;
+    private final long size;
+    private ByteBuffer mapped;
+    private long start;
+
+    Window(FileChannel channel, long position) throws IOException {
+      this.channel = channel;
+      size = channel.size();
+      start = position;
+      mapped = ByteBuffer.allocate(0);
+    }
+
+    //position in the file of the next byte to be read
+    long position() {
+      return start + mapped.position();
+    }
+
+    //the next n bytes, as a buffer positioned at the first of them
+    ByteBuffer next(long n) throws IOException {
+      if (n > Integer.MAX_VALUE) {
+        throw new IOException("saved LString chunk of " + n + " bytes is too big to map");
+      }
+      if (n > mapped.remaining()) {
+        start = position();
+        if (n > size - start) {
+          throw new IOException("saved LString ends early");
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, Math.max(n, MAP_WINDOW)));
+      }
+      ByteBuffer result = mapped.slice(mapped.position(), (int) n);
+      mapped.position(mapped.position() + (int) n);
+      return result;
+    }
+  }
+
+  //append the chars put into out, and empty it for more; source names
+  //where they came from if there are too many
+  private void drain(CharBuffer out, Object source) {
+    if (length > Integer.MAX_VALUE - out.position()) {
+      throw new IllegalArgumentException(source + " holds more than " + Integer.MAX_VALUE + " chars");
+    }
+    append(tail, out.array(), 0, out.position());
+    out.clear();
+  }
+
+  //return length of LString
+  public int length() {
+    return length;
+  }
+
+  //Create and return ordinary String with same contents as LString
+  // you MAY use string and/or StringBuilder in this method only
+  public String toString() {
+    if (cached == null) {
+      boolean latin1 = true;
+      for (node curr = front; curr != null && latin1; curr = curr.next) {
+        latin1 = curr.latin1 != null;
+      }
+      int pos = 0;
+      if (latin1) {
+        //lets String keep its compact form without scanning the chars again
+        byte[] result = new byte[length];
+        for (node curr = front; curr != null; curr = curr.next) {
+          System.arraycopy(curr.latin1, 0, result, pos, curr.count);
+          pos += curr.count;
+        }
+        cached = new String(result, StandardCharsets.ISO_8859_1);
+      } else {
+        char[] result = new char[length];
+        for (node curr = front; curr != null; curr = curr.next) {
+          curr.getChars(0, curr.count, result, pos);
+          pos += curr.count;
+        }
+        cached = new String(result);
+      }
+    }
+    return cached;
+  }
+
+  public int compareTo(LString anotherLString) {
+    // all comparisons lexicographical, ie B < BB < Ba < a
+    // walks both chains a chunk span at a time and stops at the first difference
+    node mine = front;
+    node theirs = anotherLString.front;
+    int i = 0;
+    int j = 0;
+    int remaining = Math.min(length, anotherLString.length);
+    while (remaining > 0) {
+      while (i == mine.count) {
+        mine = mine.next;
+        i = 0;
+      }
+      while (j == theirs.count) {
+        theirs = theirs.next;
+        j = 0;
+      }
+      int n = Math.min(remaining, Math.min(mine.count - i, theirs.count - j));
+      int k = mismatch(mine, i, theirs, j, n);
+      if (k >= 0) {
+        return mine.get(i + k) - theirs.get(j + k);
+      }
+      i += n;
+      j += n;
+      remaining -= n;
+    }
+    return length - anotherLString.length;
+  }
+
+  //offset of the first of n chars that differ between a from i and b from j,
+  //or -1 if they are all the same. Chunks in the same form go through
+  //Arrays.mismatch, which the JIT compiles to a vectorized loop
+  private static int mismatch(node a, int i, node b, int j, int n) {
+    if (a.latin1 != null && b.latin1 != null) {
+      return Arrays.mismatch(a.latin1, i, i + n, b.latin1, j, j + n);
+    } else if (a.data != null && b.data != null) {
+      return Arrays.mismatch(a.data, i, i + n, b.data, j, j + n);
+    } else {
+      for (int k = 0; k < n; k++) {
+        if (a.get(i + k) != b.get(j + k)) {
+          return k;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof LString)) {
+      return false;
+    }
+    LString otherLString = (LString) other;
+    //different lengths can never be equal, so skip the walk
+    return length == otherLString.length && compareTo(otherLString) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    //same value as toString().hashCode(): sum of s[i] * 31^(length-1-i)
+    if (!hashValid) {
+      hash = hashOf();
+      hashValid = true;
+    }
+    return hash;
+  }
+
+  //the hash computed from the chars, without looking at the cached one
+  private int hashOf() {
+    int h = 0;
+    for (node curr = front; curr != null; curr = curr.next) {
+      if (curr.latin1 != null) {
+        for (int i = 0; i < curr.count; i++) {
+          h = 31 * h + (curr.latin1[i] & 0xff);
+        }
+      } else {
+        for (int i = 0; i < curr.count; i++) {
+          h = 31 * h + curr.data[i];
+        }
+      }
+    }
+    return h;
+  }
+
+  //same result as equals, but at or above the parallel threshold the
+  //chars are compared in ranges by the common fork/join pool. Neither this
+  //nor parallelHash writes to the LStrings (the tasks find their ranges
+  //through NodeTables of their own), so any number of threads may call
+  //them at once, as long as the LStrings are not changed meanwhile
+  public boolean parallelEquals(LString other) {
+    if (this == other) {
+      return true;
+    }
+    if (length != other.length) {
+      return false;
+    }
+    if (length == 0 || length < parallelThreshold) {
+      return compareTo(other) == 0;
+    }
+    return ForkJoinPool.commonPool().invoke(
+        new EqualsTask(nodeTable(), other.nodeTable(), 0, length, grain(), new AtomicBoolean()));
+  }
+
+  //same result as hashCode, but at or above the parallel threshold the
+  //hashes of ranges of nodes are computed by the common fork/join pool and
+  //combined as h(ab) = h(a) * 31^length(b) + h(b). Unlike hashCode, the
+  //result is not cached
+  public int parallelHash() {
+    if (hashValid) {
+      return hash;
+    }
+    if (length < parallelThreshold) {
+      return hashOf();
+    }
+    NodeTable table = nodeTable();
+    return ForkJoinPool.commonPool().invoke(new HashTask(table, 0, table.size, grain()));
+  }
+
+  //length from which parallelEquals, parallelHash and parallel streams over
+  //chars() split the work up
+  public static int getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  public static void setParallelThreshold(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("parallel threshold " + threshold + " is negative");
+    }
+    parallelThreshold = threshold;
+  }
+
+  public char charAt(int index) {
+    //char @ index
+    checkIndex(index);
+    node curr = locate(index);
+    return curr.get(index - lastStart);
+  }
+
+  public void setCharAt(int index, char ch) {
+    //set char at given index in this LString to ch
+    checkIndex(index);
+    node curr = locate(index);
+    charChanged(index, curr.get(index - lastStart), ch);
+    curr.set(index - lastStart, ch);
+  }
+
+  public LString substring(int start, int end) {
+    //returns a *NEW* LString that is a substring of this LString.
+    // must not share any linked list nodes with old LString
+    //begins at specified start and includes character at end-1
+    checkRange(start, end);
+    return copy(start, end, pool);
+  }
+
+  //return a new LString holding chars start..end-1, taking its nodes from into
+  private LString copy(int start, int end, NodePool into) {
+    LString result = new LString(chunkSize);
+    result.pool = into;
+    if (start == end) {
+      return result;
+    }
+    node curr = locate(start);
+    int offset = start - lastStart;
+    node last = null;
+    int remaining = end - start;
+    while (remaining > 0) {
+      int n = Math.min(curr.count - offset, remaining);
+      last = result.append(last, curr, offset, n);
+      remaining -= n;
+      offset = 0;
+      curr = curr.next;
+    }
+    return result;
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    return substring(start, end);
+  }
+
+  public LString replace(int start, int end, LString lStr) {
+    //replaces this character in a substring of this LString with characters in lStr
+    //make a copy of replacement LString lStr--cannot share data
+    //resulting LString must not share any linked list structures with lStr!!!
+    //appending at length or prepending at 0 finds its place in O(1), so
+    //those cost O(|lStr|) however long this LString is (plus shifting the
+    //later entries of the position index, if there is one). Appending
+    //fills the room left in tail first, just as append(LString...) does
+    checkRange(start, end);
+    LString source = (lStr == this) ? copy(0, length, pool) : lStr;
+    if (indexed && chunkIndex == null) {
+      buildIndex();
+    }
+    //index entries lo..hi-1 are for the nodes the splice may change
+    int lo = 0;
+    int hi = 0;
+    if (indexed) {
+      lo = (start == 0) ? 0 : nodeAt(chunkStart, indexSize, start - 1);
+      hi = (end == length) ? indexSize : nodeAt(chunkStart, indexSize, end) + 1;
+    }
+    int oldLength = length;
+    //cut at end first: the index is then still right for every node up to
+    //the one holding start - 1, which is all cut(start) looks up
+    node last = cut(end);
+    node rest = (last == null) ? front : last.next;
+    node before = cut(start);
+    //recycle the replaced nodes first so the copy of lStr can reuse them
+    node curr = (before == null) ? front : before.next;
+    while (curr != rest) {
+      node following = curr.next;
+      nodeCount--;
+      if (pool != null) {
+        pool.give(curr);
+      }
+      curr = following;
+    }
+    if (before == null) {
+      front = rest;
+    } else {
+      before.next = rest;
+    }
+    if (rest == null) {
+      tail = before;
+    }
+    length -= end - start;
+    //copy lStr into this LString's own nodes, filling the room left in
+    //before first, then merge the last of them with rest if they fit in one
+    node at = before;
+    int remaining = source.length;
+    for (node src = source.front; remaining > 0; src = src.next) {
+      int n = Math.min(src.count, remaining);
+      at = append(at, src, 0, n);
+      remaining -= n;
+    }
+    merge(at);
+    if (indexed) {
+      reindex(lo, hi, (start == 0) ? front : before, length - oldLength);
+      chainChanged();
+    } else {
+      structureChanged();
+    }
+    return this;
+  }
+
+  //replace every occurrence of each key of replacements with a copy of its
+  //value, all in one pass; see replaceAll(LStringMatcher, LString...)
+  public LString replaceAll(Map<LString, LString> replacements) {
+    List<LString> patterns = new ArrayList<>(replacements.keySet());
+    LString[] values = new LString[patterns.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = replacements.get(patterns.get(i));
+    }
+    return replaceAll(new LStringMatcher(patterns), values);
+  }
+
+  //replace the occurrences matcher.findDisjoint finds, that is leftmost
+  //first and longest first where several start together, with a copy of
+  //replacements[i] for pattern i. The new chain is built in a single walk
+  //over the old one instead of one splice per occurrence
+  public LString replaceAll(LStringMatcher matcher, LString... replacements) {
+    if (replacements.length != matcher.patternCount()) {
+      throw new IllegalArgumentException(replacements.length + " replacements for "
+          + matcher.patternCount() + " patterns");
+    }
+    List<LStringMatcher.Match> matches = matcher.findDisjoint(this);
+    if (matches.isEmpty()) {
+      return this;
+    }
+    LString result = new LString(chunkSize);
+    result.pool = pool;
+    node src = front;
+    int offset = 0;
+    int pos = 0;
+    for (LStringMatcher.Match match : matches) {
+      //the chars up to the match, then the replacement, then skip the match
+      while (pos < match.start()) {
+        while (offset == src.count) {
+          src = src.next;
+          offset = 0;
+        }
+        int n = Math.min(src.count - offset, match.start() - pos);
+        result.append(result.tail, src, offset, n);
+        offset += n;
+        pos += n;
+      }
+      LString replacement = replacements[match.pattern()];
+      int remaining = replacement.length;
+      for (node from = replacement.front; remaining > 0; from = from.next) {
+        int n = Math.min(from.count, remaining);
+        result.append(result.tail, from, 0, n);
+        remaining -= n;
+      }
+      while (pos < match.end()) {
+        while (offset == src.count) {
+          src = src.next;
+          offset = 0;
+        }
+        int n = Math.min(src.count - offset, match.end() - pos);
+        offset += n;
+        pos += n;
+      }
+    }
+    while (src != null) {
+      result.append(result.tail, src, offset, src.count - offset);
+      src = src.next;
+      offset = 0;
+    }
+    if (pool != null) {
+      for (node curr = front; curr != null; ) {
+        node following = curr.next;
+        pool.give(curr);
+        curr = following;
+      }
+    }
+    front = result.front;
+    tail = result.tail;
+    length = result.length;
+    nodeCount = result.nodeCount;
+    structureChanged();
+    return this;
+  }
+
+  //append a copy of each of lStrs in turn, in one pass that starts at tail
+  public LString append(LString... lStrs) {
+    int[] lengths = new int[lStrs.length];
+    for (int i = 0; i < lStrs.length; i++) {
+      lengths[i] = lStrs[i].length;
+    }
+    for (int i = 0; i < lStrs.length; i++) {
+      //an lStr that is this only copies the chars it had to begin with
+      LString lStr = lStrs[i];
+      int remaining = lengths[i];
+      for (node src = lStr.front; remaining > 0; src = src.next) {
+        int n = Math.min(src.count, remaining);
+        append(tail, src, 0, n);
+        remaining -= n;
+      }
+    }
+    structureChanged();
+    return this;
+  }
+
+  //append a copy of n chars of src starting at off
+  void appendChars(char[] src, int off, int n) {
+    append(tail, src, off, n);
+    structureChanged();
+  }
+
+  //insert a copy of lStrs[i] before the char at indices[i] for every i, all
+  //indices counting in this LString as it was before the call (length is
+  //allowed, meaning the end); lStrs going in at the same index keep their
+  //order. The insertions are sorted by index and made in a single walk,
+  //each copied into this LString's own nodes the way replace does, and
+  //nodes the walk passes are merged with the next where they fit
+  public LString insertAll(int[] indices, LString... lStrs) {
+    if (indices.length != lStrs.length) {
+      throw new IllegalArgumentException(indices.length + " indices for " + lStrs.length + " LStrings");
+    }
+    Integer[] order = new Integer[indices.length];
+    LString before = null;
+    for (int i = 0; i < indices.length; i++) {
+      if (indices[i] < 0 || indices[i] > length) {
+        throw new IndexOutOfBoundsException("index " + indices[i] + ", length " + length);
+      }
+      order[i] = i;
+      //an lStr that is this is read from a copy of it as it was at first
+      if (lStrs[i] == this && before == null) {
+        before = copy(0, length, pool);
+      }
+    }
+    Arrays.sort(order, (a, b) -> Integer.compare(indices[a], indices[b]));
+    //curr holds the chars from currStart on, after base chars that have
+    //been merged into it ahead of them; prev is the node before curr
+    node prev = null;
+    node curr = front;
+    int currStart = 0;
+    int base = 0;
+    for (int k : order) {
+      int index = indices[k];
+      while (curr != null && index - currStart >= curr.count - base) {
+        currStart += curr.count - base;
+        base = 0;
+        node following = curr.next;
+        merge(prev);
+        if (prev == null || prev.next == curr) {
+          prev = curr;
+        }
+        curr = following;
+      }
+      if (curr != null && index > currStart) {
+        //fold curr into prev first where it fits, then cut at index
+        int had = (prev == null) ? 0 : prev.count;
+        merge(prev);
+        if (prev != null && prev.next != curr) {
+          curr = prev;
+          base = had;
+        }
+        prev = curr;
+        curr = split(curr, base + index - currStart);
+        currStart = index;
+        base = 0;
+      }
+      LString source = (lStrs[k] == this) ? before : lStrs[k];
+      int remaining = source.length;
+      for (node src = source.front; remaining > 0; src = src.next) {
+        int n = Math.min(src.count, remaining);
+        prev = append(prev, src, 0, n);
+        remaining -= n;
+      }
+    }
+    merge(prev);
+    structureChanged();
+    return this;
+  }
+
+  //index of the first occurrence of pattern, or -1 if there is none
+  public int indexOf(LString pattern) {
+    return indexOf(pattern, 0);
+  }
+
+  //index of the first occurrence of pattern starting at or after from, or
+  //-1 if there is none; like String.indexOf, from may be out of bounds
+  public int indexOf(LString pattern, int from) {
+    char[] p = pattern.toString().toCharArray();
+    from = Math.max(from, 0);
+    if (p.length == 0) {
+      return Math.min(from, length);
+    }
+    return find(p, from, new Walker());
+  }
+
+  //index of the last occurrence of pattern, or -1 if there is none
+  public int lastIndexOf(LString pattern) {
+    return lastIndexOf(pattern, length);
+  }
+
+  //index of the last occurrence of pattern starting at or before from, or
+  //-1 if there is none; like String.lastIndexOf, from may be out of bounds
+  public int lastIndexOf(LString pattern, int from) {
+    char[] p = pattern.toString().toCharArray();
+    int m = p.length;
+    int s = Math.min(from, length - m);
+    if (s < 0) {
+      return -1;
+    }
+    if (m == 0) {
+      return s;
+    }
+    Walker text = new Walker();
+    if (m < HORSPOOL_MIN_PATTERN) {
+      for (; s >= 0; s--) {
+        if (matches(p, s, text)) {
+          return s;
+        }
+      }
+      return -1;
+    }
+    //Horspool run backwards: the window's first char decides the shift
+    int[] shift = new int[256];
+    Arrays.fill(shift, m);
+    for (int j = m - 1; j > 0; j--) {
+      shift[p[j] & 0xff] = j;
+    }
+    while (s >= 0) {
+      char first = text.get(s);
+      if (first == p[0] && matches(p, s, text)) {
+        return s;
+      }
+      s -= shift[first & 0xff];
+    }
+    return -1;
+  }
+
+  public boolean contains(LString pattern) {
+    return indexOf(pattern) >= 0;
+  }
+
+  //indices of the occurrences of pattern found scanning left to right and
+  //going on after the end of each one, so they do not overlap and can be
+  //handed to replace from the last one back. An empty pattern occurs at
+  //every index from 0 to length
+  public int[] findAll(LString pattern) {
+    char[] p = pattern.toString().toCharArray();
+    if (p.length == 0) {
+      int[] all = new int[length + 1];
+      Arrays.setAll(all, i -> i);
+      return all;
+    }
+    Walker text = new Walker();
+    int[] found = new int[8];
+    int n = 0;
+    for (int i = find(p, 0, text); i >= 0; i = find(p, i + p.length, text)) {
+      if (n == found.length) {
+        found = Arrays.copyOf(found, n * 2);
+      }
+      found[n++] = i;
+    }
+    return Arrays.copyOf(found, n);
+  }
+
+  //index of the first occurrence of the non-empty p at or after from
+  private int find(char[] p, int from, Walker text) {
+    int m = p.length;
+    int last = length - m;
+    if (m < HORSPOOL_MIN_PATTERN) {
+      for (int s = from; s <= last; s++) {
+        if (text.get(s) == p[0] && matches(p, s, text)) {
+          return s;
+        }
+      }
+      return -1;
+    }
+    //Horspool: the window's last char decides how far it can move. The
+    //table is indexed by the char's low byte and keeps the smallest shift
+    //of the chars sharing it, which is safe for any char
+    int[] shift = new int[256];
+    Arrays.fill(shift, m);
+    for (int j = 0; j < m - 1; j++) {
+      shift[p[j] & 0xff] = m - 1 - j;
+    }
+    char end = p[m - 1];
+    for (int s = from; s <= last; ) {
+      char ch = text.get(s + m - 1);
+      if (ch == end && matches(p, s, text)) {
+        return s;
+      }
+      s += shift[ch & 0xff];
+    }
+    return -1;
+  }
+
+  //whether p occurs at s, comparing from its end as Horspool does
+  private static boolean matches(char[] p, int s, Walker text) {
+    for (int j = p.length - 1; j >= 0; j--) {
+      if (text.get(s + j) != p[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  //reads chars at arbitrary positions through the position index, moving
+  //to a neighbouring node in O(1) and anywhere else by binary search, so a
+  //search going back and forth over a few nodes never walks the chain
+  private final class Walker {
+    private final node[] nodes;
+    private final int[] starts;
+    private final int n;
+    private int k;
+    private node curr;
+    private int start;
+
+    Walker() {
+      //the kept index if setIndexed(true) asked for one, otherwise one
+      //built for this search alone
+      NodeTable table = (chunkIndex != null) ? null : nodeTable();
+      nodes = (table == null) ? chunkIndex : table.nodes;
+      starts = (table == null) ? chunkStart : table.starts;
+      n = (table == null) ? indexSize : table.size;
+      curr = (n > 0) ? nodes[0] : null;
+    }
+
+    //the char at pos, which must be in bounds
+    char get(int pos) {
+      if (pos < start || pos - start >= curr.count) {
+        if (pos >= start && k + 1 < n && pos - starts[k + 1] < nodes[k + 1].count) {
+          k++;
+        } else if (pos < start && k > 0 && pos >= starts[k - 1]) {
+          k--;
+        } else {
+          k = nodeAt(starts, n, pos);
+        }
+        //skip empty nodes that share their start with the one holding pos
+        while (pos - starts[k] >= nodes[k].count) {
+          k++;
+        }
+        curr = nodes[k];
+        start = starts[k];
+      }
+      return curr.get(pos - start);
+    }
+  }
+
+  //return a cursor positioned before the first char
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  //return a cursor positioned before the char at index
+  public Cursor cursor(int index) {
+    Cursor cursor = new Cursor();
+    cursor.seek(index);
+    return cursor;
+  }
+
+  public Iterator<Character> iterator() {
+    Cursor cursor = cursor();
+    return new Iterator<Character>() {
+      public boolean hasNext() {
+        return cursor.hasNext();
+      }
+
+      public Character next() {
+        return cursor.next();
+      }
+    };
+  }
+
+  //iterate over the chars without boxing them
+  public PrimitiveIterator.OfInt charIterator() {
+    Cursor cursor = cursor();
+    return new PrimitiveIterator.OfInt() {
+      public boolean hasNext() {
+        return cursor.hasNext();
+      }
+
+      public int nextInt() {
+        return cursor.next();
+      }
+    };
+  }
+
+  //spliterator over the chars without boxing them, reading straight from
+  //the nodes; its size is exact, and once the LString reaches the parallel
+  //threshold it splits at node boundaries
+  public Spliterator.OfInt charSpliterator() {
+    return new CharSpliterator(front, 0, 0, length, null);
+  }
+
+  @Override
+  public Spliterator<Character> spliterator() {
+    return new BoxingSpliterator(charSpliterator());
+  }
+
+  //stream of the chars from charSpliterator(), so no String is built
+  @Override
+  public IntStream chars() {
+    return StreamSupport.intStream(charSpliterator(), false);
+  }
+
+  //moves forward through the chain a char at a time, so a scan costs O(1)
+  //per char; replace invalidates it, setCharAt and set do not
+  public class Cursor {
+    private node curr;
+    private int offset;
+    private int position;
+    private node lastReturned;
+    private int lastOffset;
+    private int expectedModCount = modCount;
+
+    private Cursor() {
+      curr = front;
+    }
+
+    //index of the char next() will return
+    public int position() {
+      return position;
+    }
+
+    public boolean hasNext() {
+      return position < length;
+    }
+
+    public char next() {
+      checkForModification();
+      if (position >= length) {
+        throw new NoSuchElementException();
+      }
+      while (offset == curr.count) {
+        curr = curr.next;
+        offset = 0;
+      }
+      lastReturned = curr;
+      lastOffset = offset;
+      position++;
+      return curr.get(offset++);
+    }
+
+    //move so that next() returns the char at index; index may be length
+    public void seek(int index) {
+      checkForModification();
+      if (index < 0 || index > length) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+      }
+      if (index == length) {
+        curr = null;
+        offset = 0;
+      } else {
+        curr = locate(index);
+        offset = index - lastStart;
+      }
+      position = index;
+      lastReturned = null;
+    }
+
+    //replace the char last returned by next() with ch
+    public void set(char ch) {
+      checkForModification();
+      if (lastReturned == null) {
+        throw new IllegalStateException("next() has not been called since the last seek");
+      }
+      charChanged(position - 1, lastReturned.get(lastOffset), ch);
+      lastReturned.set(lastOffset, ch);
+    }
+
+    private void checkForModification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  //walks positions pos..fence-1 over the node array of the position index
+  //as it was when chars() was called; splits at the node boundary nearest
+  //the middle. Like the cursor, it fails once replace has changed the chain
+  private final class CharSpliterator implements Spliterator.OfInt {
+    private final boolean splittable = length >= parallelThreshold;
+    private final int expectedModCount = modCount;
+    // node holding pos, and pos's offset in it
+    private node curr;
+    private int offset;
+    private int pos;
+    private final int fence;
+    // nodes of the chain by position, built by the first trySplit and
+    // shared by every spliterator split off after it
+    private NodeTable table;
+
+    CharSpliterator(node curr, int offset, int pos, int fence, NodeTable table) {
+      this.curr = curr;
+      this.offset = offset;
+      this.pos = pos;
+      this.fence = fence;
+      this.table = table;
+    }
+
+    public boolean tryAdvance(IntConsumer action) {
+      if (pos >= fence) {
+        return false;
+      }
+      while (offset == curr.count) {
+        curr = curr.next;
+        offset = 0;
+      }
+      action.accept(curr.get(offset++));
+      pos++;
+      checkForModification();
+      return true;
+    }
+
+    public void forEachRemaining(IntConsumer action) {
+      while (pos < fence) {
+        while (offset == curr.count) {
+          curr = curr.next;
+          offset = 0;
+        }
+        int n = Math.min(curr.count - offset, fence - pos);
+        if (curr.latin1 != null) {
+          for (int k = offset; k < offset + n; k++) {
+            action.accept(curr.latin1[k] & 0xff);
+          }
+        } else {
+          for (int k = offset; k < offset + n; k++) {
+            action.accept(curr.data[k]);
+          }
+        }
+        pos += n;
+        offset += n;
+      }
+      checkForModification();
+    }
+
+    public Spliterator.OfInt trySplit() {
+      int mid = (pos + fence) >>> 1;
+      if (!splittable || mid <= pos) {
+        return null;
+      }
+      checkForModification();
+      if (table == null) {
+        table = nodeTable();
+      }
+      int k = nodeAt(table.starts, table.size, mid);
+      if (table.starts[k] > pos) {
+        mid = table.starts[k];
+      }
+      CharSpliterator prefix = new CharSpliterator(curr, offset, pos, mid, table);
+      curr = table.nodes[k];
+      offset = mid - table.starts[k];
+      pos = mid;
+      return prefix;
+    }
+
+    public long estimateSize() {
+      return fence - pos;
+    }
+
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    private void checkForModification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  //the chars of a CharSpliterator as Characters, for spliterator()
+  private static final class BoxingSpliterator implements Spliterator<Character> {
+    private final Spliterator.OfInt chars;
+
+    BoxingSpliterator(Spliterator.OfInt chars) {
+      this.chars = chars;
+    }
+
+    public boolean tryAdvance(Consumer<? super Character> action) {
+      return chars.tryAdvance((int ch) -> action.accept((char) ch));
+    }
+
+    public void forEachRemaining(Consumer<? super Character> action) {
+      chars.forEachRemaining((int ch) -> action.accept((char) ch));
+    }
+
+    public Spliterator<Character> trySplit() {
+      Spliterator.OfInt prefix = chars.trySplit();
+      return (prefix == null) ? null : new BoxingSpliterator(prefix);
+    }
+
+    public long estimateSize() {
+      return chars.estimateSize();
+    }
+
+    public int characteristics() {
+      return chars.characteristics();
+    }
+  }
+
+  //compares chars start..end-1 of this and other, splitting the range in
+  //half until it is at most grain chars; the first difference found stops
+  //the other tasks early. Tasks are never serialized, whatever
+  //RecursiveTask allows
+  @SuppressWarnings("serial")
+  private static final class EqualsTask extends RecursiveTask<Boolean> {
+    private final NodeTable mine;
+    private final NodeTable theirs;
+    private final int start;
+    private final int end;
+    private final int grain;
+    private final AtomicBoolean differs;
+
+    EqualsTask(NodeTable mine, NodeTable theirs, int start, int end, int grain, AtomicBoolean differs) {
+      this.mine = mine;
+      this.theirs = theirs;
+      this.start = start;
+      this.end = end;
+      this.grain = grain;
+      this.differs = differs;
+    }
+
+    protected Boolean compute() {
+      if (end - start > grain) {
+        int mid = (start + end) >>> 1;
+        EqualsTask right = new EqualsTask(mine, theirs, mid, end, grain, differs);
+        right.fork();
+        boolean equal = new EqualsTask(mine, theirs, start, mid, grain, differs).compute();
+        return right.join() && equal;
+      }
+      int i = nodeAt(mine.starts, mine.size, start);
+      int j = nodeAt(theirs.starts, theirs.size, start);
+      node x = mine.nodes[i];
+      node y = theirs.nodes[j];
+      int a = start - mine.starts[i];
+      int b = start - theirs.starts[j];
+      int remaining = end - start;
+      while (remaining > 0 && !differs.get()) {
+        while (a == x.count) {
+          x = x.next;
+          a = 0;
+        }
+        while (b == y.count) {
+          y = y.next;
+          b = 0;
+        }
+        int n = Math.min(remaining, Math.min(x.count - a, y.count - b));
+        if (mismatch(x, a, y, b, n) >= 0) {
+          differs.set(true);
+        }
+        a += n;
+        b += n;
+        remaining -= n;
+      }
+      return !differs.get();
+    }
+  }
+
+  //hash of the chars in nodes lo..hi-1 of table, as if they were the whole
+  //string
+  @SuppressWarnings("serial")
+  private final class HashTask extends RecursiveTask<Integer> {
+    private final NodeTable table;
+    private final int lo;
+    private final int hi;
+    private final int grain;
+
+    HashTask(NodeTable table, int lo, int hi, int grain) {
+      this.table = table;
+      this.lo = lo;
+      this.hi = hi;
+      this.grain = grain;
+    }
+
+    protected Integer compute() {
+      if (hi - lo > 1 && startOf(hi) - startOf(lo) > grain) {
+        int mid = (lo + hi) >>> 1;
+        HashTask right = new HashTask(table, mid, hi, grain);
+        right.fork();
+        int left = new HashTask(table, lo, mid, grain).compute();
+        return left * pow31(startOf(hi) - startOf(mid)) + right.join();
+      }
+      int h = 0;
+      for (int k = lo; k < hi; k++) {
+        node curr = table.nodes[k];
+        if (curr.latin1 != null) {
+          for (int i = 0; i < curr.count; i++) {
+            h = 31 * h + (curr.latin1[i] & 0xff);
+          }
+        } else {
+          for (int i = 0; i < curr.count; i++) {
+            h = 31 * h + curr.data[i];
+          }
+        }
+      }
+      return h;
+    }
+
+    private int startOf(int k) {
+      return (k < table.size) ? table.starts[k] : length;
+    }
+  }
+
+  //chars per fork/join task: enough tasks to keep every worker busy, but
+  //none so small that forking costs more than the walk
+  private int grain() {
+    return Math.max(length / (4 * ForkJoinPool.getCommonPoolParallelism()), 1 << 14);
+  }
+
+  //index of the node holding pos among the first n of a position index
+  private static int nodeAt(int[] starts, int n, int pos) {
+    int i = Arrays.binarySearch(starts, 0, n, pos);
+    return (i < 0) ? -i - 2 : i;
+  }
+
+  //take new nodes from pool and hand the nodes replace drops back to it;
+  //substrings share the pool. null turns pooling off
+  public void setNodePool(NodePool pool) {
+    this.pool = pool;
+  }
+
+  public NodePool getNodePool() {
+    return pool;
+  }
+
+  //bounded stock of spare nodes that LStrings opting in with setNodePool
+  //reuse instead of allocating, to cut allocation under heavy replace
+  //churn. Spare nodes are kept on a stack per capacity, so a node of an odd
+  //size never hides the ones a take could use. Not thread-safe: share a
+  //pool only among LStrings used by one thread, e.g. the one forThread()
+  //returns
+  public static final class NodePool {
+    // most nodes a pool made by forThread() keeps
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final ThreadLocal<NodePool> perThread =
+        ThreadLocal.withInitial(() -> new NodePool(DEFAULT_MAX_SIZE));
+
+    private final int maxSize;
+    // capacity -> top of the stack of spare nodes with that capacity
+    private final Map<Integer, node> free = new HashMap<>();
+    private int size;
+    private long hits;
+    private long misses;
+
+    public NodePool(int maxSize) {
+      if (maxSize < 0) {
+        throw new IllegalArgumentException("pool size " + maxSize + " is negative");
+      }
+      this.maxSize = maxSize;
+    }
+
+    //the calling thread's own pool
+    public static NodePool forThread() {
+      return perThread.get();
+    }
+
+    //number of nodes handed out from the pool
+    public long hits() {
+      return hits;
+    }
+
+    //number of nodes that had to be allocated because none fit
+    public long misses() {
+      return misses;
+    }
+
+    //number of spare nodes held
+    public int size() {
+      return size;
+    }
+
+    private node take(int capacity) {
+      node taken = free.get(capacity);
+      if (taken != null) {
+        if (taken.next == null) {
+          free.remove(capacity);
+        } else {
+          free.put(capacity, taken.next);
+        }
+        taken.next = null;
+        size--;
+        hits++;
+        return taken;
+      }
+      misses++;
+      return new node(capacity);
+    }
+
+    //keep dropped for reuse, back in Latin-1 form like a new node, so text
+    //stored in it later is not left in UTF-16 because it once held a wide char
+    private void give(node dropped) {
+      if (size < maxSize) {
+        if (dropped.latin1 == null) {
+          dropped.latin1 = new byte[dropped.data.length];
+          dropped.data = null;
+        }
+        dropped.count = 0;
+        dropped.next = free.get(dropped.capacity());
+        free.put(dropped.capacity(), dropped);
+        size++;
+      }
+    }
+  }
+
+  //number of nodes holding their chars in UTF-16, for tests
+  int wideNodes() {
+    int n = 0;
+    for (node curr = front; curr != null; curr = curr.next) {
+      if (curr.latin1 == null) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  //turn the position index on or off; with it on, charAt and setCharAt
+  //take O(log n) instead of walking the chain from front
+  public void setIndexed(boolean indexed) {
+    this.indexed = indexed;
+    chunkIndex = null;
+    chunkStart = null;
+  }
+
+  public boolean isIndexed() {
+    return indexed;
+  }
+
+  //return the node holding index (which must be in bounds), leaving the
+  //position of its first char in lastStart; an index at or after the last
+  //node found is reached from there, so nearby lookups cost O(distance)
+  private node locate(int index) {
+    if (lastNode != null && index >= lastStart && index - lastStart < lastNode.count) {
+      return lastNode;
+    }
+    if (indexed && (chunkIndex != null || lastNode == null || index < lastStart)) {
+      if (chunkIndex == null) {
+        buildIndex();
+      }
+      int i = Arrays.binarySearch(chunkStart, 0, indexSize, index);
+      if (i < 0) {
+        i = -i - 2;
+      }
+      lastStart = chunkStart[i];
+      lastNode = chunkIndex[i];
+      return lastNode;
+    }
+    node curr = front;
+    int start = 0;
+    if (lastNode != null && index >= lastStart) {
+      curr = lastNode;
+      start = lastStart;
+    }
+    while (index - start >= curr.count) {
+      start += curr.count;
+      curr = curr.next;
+    }
+    lastStart = start;
+    lastNode = curr;
+    return curr;
+  }
+
+  //update what is derived from the chars when the one at index goes from
+  //old to ch: the hash moves by (ch - old) times that position's power of 31
+  private void charChanged(int index, char old, char ch) {
+    cached = null;
+    if (hashValid) {
+      hash += (ch - old) * pow31(length - 1 - index);
+    }
+  }
+
+  //31^n in int arithmetic, by repeated squaring
+  private static int pow31(int n) {
+    int result = 1;
+    int base = 31;
+    while (n > 0) {
+      if ((n & 1) != 0) {
+        result *= base;
+      }
+      base *= base;
+      n >>= 1;
+    }
+    return result;
+  }
+
+  //forget everything derived from the shape of the chain after a splice
+  private void structureChanged() {
+    chunkIndex = null;
+    chainChanged();
+  }
+
+  //same, but for a splice that has kept the position index up to date
+  private void chainChanged() {
+    cached = null;
+    hashValid = false;
+    lastNode = null;
+    modCount++;
+  }
+
+  //bring the position index up to date after a splice that changed the
+  //nodes of entries lo..hi-1 and moved the chars after them by delta:
+  //those entries give way to the nodes from first up to the one entry hi
+  //was for, and the later starts shift, so no entry before lo is touched
+  private void reindex(int lo, int hi, node first, int delta) {
+    node stop = (hi < indexSize) ? chunkIndex[hi] : null;
+    int m = 0;
+    for (node curr = first; curr != stop; curr = curr.next) {
+      m++;
+    }
+    int size = indexSize - (hi - lo) + m;
+    if (size > chunkIndex.length) {
+      int capacity = Math.max(size, indexSize + (indexSize >> 1));
+      chunkIndex = Arrays.copyOf(chunkIndex, capacity);
+      chunkStart = Arrays.copyOf(chunkStart, capacity);
+    }
+    int start = (lo < indexSize) ? chunkStart[lo] : 0;
+    System.arraycopy(chunkIndex, hi, chunkIndex, lo + m, indexSize - hi);
+    System.arraycopy(chunkStart, hi, chunkStart, lo + m, indexSize - hi);
+    int i = lo;
+    for (node curr = first; curr != stop; curr = curr.next) {
+      chunkIndex[i] = curr;
+      chunkStart[i] = start;
+      start += curr.count;
+      i++;
+    }
+    for (; i < size; i++) {
+      chunkStart[i] += delta;
+    }
+    if (size < indexSize) {
+      Arrays.fill(chunkIndex, size, indexSize, null);
+    }
+    indexSize = size;
+  }
+
+  private void buildIndex() {
+    NodeTable table = nodeTable();
+    chunkIndex = table.nodes;
+    chunkStart = table.starts;
+    indexSize = table.size;
+  }
+
+  //a position index over the chain as it is now, for a caller to use
+  //without keeping it on the LString, where replace would have to keep it
+  //up to date
+  private NodeTable nodeTable() {
+    NodeTable table = new NodeTable(nodeCount);
+    int i = 0;
+    int start = 0;
+    for (node curr = front; curr != null; curr = curr.next) {
+      table.nodes[i] = curr;
+      table.starts[i] = start;
+      start += curr.count;
+      i++;
+    }
+    return table;
+  }
+
+  // nodes[i] is the i-th node of the chain and starts[i] the position of
+  // its first char, as they were when the table was built
+  private static final class NodeTable {
+    final node[] nodes;
+    final int[] starts;
+    final int size;
+
+    NodeTable(int size) {
+      nodes = new node[size];
+      starts = new int[size];
+      this.size = size;
+    }
+  }
+
+  //copy n chars of src starting at off into this LString after the node
+  //last (null for the front), which is tail when appending; returns the
+  //node holding the last char copied
+  private node append(node last, char[] src, int off, int n) {
+    while (n > 0) {
+      last = room(last);
+      int k = Math.min(n, last.capacity() - last.count);
+      last.put(last.count, src, off, k);
+      last.count += k;
+      length += k;
+      off += k;
+      n -= k;
+    }
+    return last;
+  }
+
+  //same as above, copying chars of a CharSequence; Strings are copied a
+  //chunk at a time straight into the nodes without an intermediate array
+  private node append(node last, CharSequence src, int off, int n) {
+    while (n > 0) {
+      last = room(last);
+      int k = Math.min(n, last.capacity() - last.count);
+      last.put(last.count, src, off, k);
+      last.count += k;
+      length += k;
+      off += k;
+      n -= k;
+    }
+    return last;
+  }
+
+  //same as above, copying chars out of the node src
+  private node append(node last, node src, int off, int n) {
+    while (n > 0) {
+      last = room(last);
+      int k = Math.min(n, last.capacity() - last.count);
+      last.put(last.count, src, off, k);
+      last.count += k;
+      length += k;
+      off += k;
+      n -= k;
+    }
+    return last;
+  }
+
+  private node newNode(int capacity) {
+    return (pool != null) ? pool.take(capacity) : new node(capacity);
+  }
+
+  //return last if it has space left, otherwise link a fresh node after it
+  //(or in front if last is null), ahead of whatever followed
+  private node room(node last) {
+    if (last != null && last.count < last.capacity()) {
+      return last;
+    }
+    node added = newNode(chunkSize);
+    if (last == null) {
+      added.next = front;
+      front = added;
+    } else {
+      added.next = last.next;
+      last.next = added;
+    }
+    if (added.next == null) {
+      tail = added;
+    }
+    nodeCount++;
+    return added;
+  }
+
+  //move the chars of the node after curr into curr and drop it, if they
+  //fit, so splices do not leave a run of part-empty nodes behind
+  private void merge(node curr) {
+    if (curr == null || curr.next == null || curr.count + curr.next.count > curr.capacity()) {
+      return;
+    }
+    node dropped = curr.next;
+    curr.put(curr.count, dropped, 0, dropped.count);
+    curr.count += dropped.count;
+    curr.next = dropped.next;
+    if (tail == dropped) {
+      tail = curr;
+    }
+    nodeCount--;
+    if (pool != null) {
+      pool.give(dropped);
+    }
+  }
+
+  //make sure a node boundary falls at index, splitting the node that holds
+  //it if needed; returns the node ending at index, or null if index is 0
+  private node cut(int index) {
+    if (index == 0) {
+      return null;
+    }
+    if (index == length) {
+      return tail;
+    }
+    node curr = locate(index - 1);
+    int offset = index - lastStart;
+    if (offset < curr.count) {
+      split(curr, offset);
+    }
+    return curr;
+  }
+
+  //move the chars of curr from offset on into a new node linked after it,
+  //and return that node
+  private node split(node curr, int offset) {
+    int rest = curr.count - offset;
+    node added = newNode(Math.max(rest, chunkSize));
+    added.put(0, curr, offset, rest);
+    added.count = rest;
+    added.next = curr.next;
+    curr.next = added;
+    curr.count = offset;
+    if (tail == curr) {
+      tail = added;
+    }
+    nodeCount++;
+    //the index does not know about the new node yet, though lastNode is
+    //still right; callers bring it up to date or drop it
+    return added;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+  }
+
+  private void checkRange(int start, int end) {
+    if (start < 0 || start > end || end > length) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+    }
+  }
+
+}
@@ -0,0 +1,246 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+// Aho-Corasick automaton over a fixed list of patterns, built once and then
+// run over any number of LStrings. A single walk over the chain finds every
+// occurrence of every pattern, taking O(length + matches) however many
+// patterns there are. State 0 is the root of the trie of patterns; fail[s]
+// is the state for the longest proper suffix of s's text that is also in
+// the trie, and dict[s] the nearest state along that fail chain that ends a
+// pattern, so the patterns ending at a position are found without walking
+// the whole fail chain.
+public final class LStringMatcher {
+
+  private final int patternCount;
+
+  // children of state s: labels[s] sorted, with targets[s] alongside
+  private final char[][] labels;
+  private final int[][] targets;
+  private final int[] fail;
+  private final int[] dict;
+  // chars from the root to each state
+  private final int[] depth;
+  // index of the pattern state s ends, or -1
+  private final int[] out;
+
+  public LStringMatcher(LString... patterns) {
+    this(Arrays.asList(patterns));
+  }
+
+  //the patterns must not be empty; a pattern listed twice is reported
+  //under its first index
+  public LStringMatcher(List<LString> patterns) {
+    patternCount = patterns.size();
+    //build the trie with its edges in a map, then give each state its
+    //children as sorted arrays
+    Map<Long, Integer> edges = new HashMap<>();
+    List<Integer> depths = new ArrayList<>();
+    List<Integer> ends = new ArrayList<>();
+    depths.add(0);
+    ends.add(-1);
+    for (int i = 0; i < patternCount; i++) {
+      LString pattern = patterns.get(i);
+      if (pattern.length() == 0) {
+        throw new IllegalArgumentException("pattern " + i + " is empty");
+      }
+      int state = 0;
+      for (int j = 0; j < pattern.length(); j++) {
+        long edge = ((long) state << 16) | pattern.charAt(j);
+        Integer next = edges.get(edge);
+        if (next == null) {
+          next = depths.size();
+          edges.put(edge, next);
+          depths.add(j + 1);
+          ends.add(-1);
+        }
+        state = next;
+      }
+      if (ends.get(state) < 0) {
+        ends.set(state, i);
+      }
+    }
+    int states = depths.size();
+    depth = new int[states];
+    out = new int[states];
+    for (int s = 0; s < states; s++) {
+      depth[s] = depths.get(s);
+      out[s] = ends.get(s);
+    }
+    int[] childCount = new int[states];
+    for (long edge : edges.keySet()) {
+      childCount[(int) (edge >>> 16)]++;
+    }
+    labels = new char[states][];
+    targets = new int[states][];
+    for (int s = 0; s < states; s++) {
+      labels[s] = new char[childCount[s]];
+      targets[s] = new int[childCount[s]];
+    }
+    Long[] sorted = edges.keySet().toArray(new Long[0]);
+    Arrays.sort(sorted);
+    int[] filled = new int[states];
+    for (long edge : sorted) {
+      int s = (int) (edge >>> 16);
+      labels[s][filled[s]] = (char) edge;
+      targets[s][filled[s]] = edges.get(edge);
+      filled[s]++;
+    }
+    //fail and dict links, breadth first so a state's links are set after
+    //those of every shallower state
+    fail = new int[states];
+    dict = new int[states];
+    dict[0] = -1;
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    queue.add(0);
+    while (!queue.isEmpty()) {
+      int s = queue.remove();
+      for (int k = 0; k < labels[s].length; k++) {
+        int child = targets[s][k];
+        fail[child] = (s == 0) ? 0 : step(fail[s], labels[s][k]);
+        int f = fail[child];
+        dict[child] = (out[f] >= 0) ? f : dict[f];
+        queue.add(child);
+      }
+    }
+  }
+
+  public int patternCount() {
+    return patternCount;
+  }
+
+  //every occurrence of every pattern in text, overlapping ones included,
+  //ordered by where they end and then from longest to shortest
+  public List<Match> findAll(LString text) {
+    List<Match> found = new ArrayList<>();
+    text.charSpliterator().forEachRemaining(new Walk() {
+      void matched(int start, int end, int pattern) {
+        found.add(new Match(start, end, pattern));
+      }
+    });
+    return found;
+  }
+
+  //the occurrences a left to right replace would use: the leftmost match,
+  //the longest if several start there, then the same again from its end.
+  //A candidate is settled as soon as no match still to come could start at
+  //or before it, so only a few are held at a time
+  public List<Match> findDisjoint(LString text) {
+    List<Match> chosen = new ArrayList<>();
+    // start -> longest pattern found starting there, as a Match
+    TreeMap<Integer, Match> pending = new TreeMap<>();
+    Walk walk = new Walk() {
+      private int settledTo;
+
+      void matched(int start, int end, int pattern) {
+        Match best = pending.get(start);
+        if (start >= settledTo && (best == null || best.end < end)) {
+          pending.put(start, new Match(start, end, pattern));
+        }
+      }
+
+      void stepped(int pos, int state) {
+        settle(pos - depth[state]);
+      }
+
+      void finished() {
+        settle(Integer.MAX_VALUE);
+      }
+
+      //choose pending candidates starting before bound
+      private void settle(int bound) {
+        while (!pending.isEmpty() && pending.firstKey() < bound) {
+          Match match = pending.pollFirstEntry().getValue();
+          chosen.add(match);
+          settledTo = match.end;
+          pending.headMap(settledTo).clear();
+        }
+      }
+    };
+    text.charSpliterator().forEachRemaining(walk);
+    walk.finished();
+    return chosen;
+  }
+
+  //one occurrence of a pattern: chars start..end-1 of the text, ready to
+  //pass to substring or replace
+  public static final class Match {
+    private final int start;
+    private final int end;
+    private final int pattern;
+
+    Match(int start, int end, int pattern) {
+      this.start = start;
+      this.end = end;
+      this.pattern = pattern;
+    }
+
+    public int start() {
+      return start;
+    }
+
+    public int end() {
+      return end;
+    }
+
+    //index of the pattern in the list the matcher was built from
+    public int pattern() {
+      return pattern;
+    }
+
+    public String toString() {
+      return "pattern " + pattern + " at " + start + ".." + end;
+    }
+  }
+
+  //runs the automaton over chars fed to it one at a time, reporting each
+  //pattern that ends at each position
+  private abstract class Walk implements IntConsumer {
+    private int state;
+    private int pos;
+
+    public void accept(int ch) {
+      state = step(state, (char) ch);
+      pos++;
+      for (int s = (out[state] >= 0) ? state : dict[state]; s >= 0; s = dict[s]) {
+        matched(pos - depth[s], pos, out[s]);
+      }
+      stepped(pos, state);
+    }
+
+    abstract void matched(int start, int end, int pattern);
+
+    //called after the chars before pos have been taken in
+    void stepped(int pos, int state) {
+    }
+
+    //called after the last char
+    void finished() {
+    }
+  }
+
+  //the state after reading ch in state s
+  private int step(int s, char ch) {
+    while (true) {
+      int k = Arrays.binarySearch(labels[s], ch);
+      if (k >= 0) {
+        return targets[s][k];
+      }
+      if (s == 0) {
+        return 0;
+      }
+      s = fail[s];
+    }
+  }
+
+}
@@ -0,0 +1,318 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+// read-only text of a memory-mapped file, decoded a chunk at a time the
+// first time charAt or substring touches the chunk. Chunk i holds chars
+// charStarts[i]..charStarts[i+1]-1, decoded from bytes
+// byteStarts[i]..byteStarts[i+1]-1 of the file. With a single-byte charset
+// or UTF-16BE/LE the table is worked out from the file size, so opening
+// takes no time whatever the size; any other charset needs one decoding
+// pass over the file to find where the chunks start. UTF-16 chars are
+// copied as they are, so a surrogate pair split between chunks survives.
+// Decoding a chunk on its own is only right when the decoder carries no
+// state from one chunk into the next: UTF-16 and UTF-32 are resolved to
+// their explicit-endian forms from the byte order mark when the file is
+// opened, and a charset not known to be stateless (ISO-2022-JP, say) is
+// decoded in full by that one pass instead of lazily.
+// Like LString, not thread-safe, and holds at most Integer.MAX_VALUE chars.
+public class MappedLString implements CharSequence {
+
+  // chars per chunk; the last chunk may be shorter, and with a variable
+  // width charset a chunk may be a char short so as not to split a pair
+  static final int CHUNK_CHARS = 8192;
+
+  // multi-byte charsets whose chunks can be decoded independently, given
+  // where each starts; single-byte charsets can be too
+  private static final Set<String> STATELESS = Set.of("UTF-8", "UTF-16BE", "UTF-16LE",
+      "UTF-32BE", "UTF-32LE", "Shift_JIS", "windows-31j", "EUC-JP", "EUC-KR", "GBK", "GB2312",
+      "GB18030", "Big5", "Big5-HKSCS");
+
+  private final CharsetDecoder decoder;
+  // byte order of a UTF-16BE/LE file, otherwise null
+  private final ByteOrder utf16;
+  private final int length;
+  private final int chunkCount;
+  private final long[] byteStarts;
+  private final int[] charStarts;
+
+  // windows[k] maps the file from k * MAP_WINDOW on, plus enough bytes for
+  // any chunk that starts in it to end in it too
+  private final ByteBuffer[] windows;
+
+  // decoded chunks, null until first needed
+  private final char[][] chunks;
+
+  // chunk last returned by chunkOf
+  private int lastChunk;
+
+  //decoded holds every chunk already decoded, or is null to decode them
+  //as they are needed
+  private MappedLString(FileChannel channel, Charset charset, long[] byteStarts, int[] charStarts,
+      int chunkCount, char[][] decoded) throws IOException {
+    decoder = newDecoder(charset);
+    if (charset.equals(StandardCharsets.UTF_16BE)) {
+      utf16 = ByteOrder.BIG_ENDIAN;
+    } else if (charset.equals(StandardCharsets.UTF_16LE)) {
+      utf16 = ByteOrder.LITTLE_ENDIAN;
+    } else {
+      utf16 = null;
+    }
+    this.byteStarts = byteStarts;
+    this.charStarts = charStarts;
+    this.chunkCount = chunkCount;
+    length = charStarts[chunkCount];
+    chunks = (decoded != null) ? decoded : new char[chunkCount][];
+    long maxChunkBytes = 0;
+    for (int i = 0; i < chunkCount; i++) {
+      maxChunkBytes = Math.max(maxChunkBytes, byteStarts[i + 1] - byteStarts[i]);
+    }
+    long size = channel.size();
+    windows = new ByteBuffer[(int) ((size + LString.MAP_WINDOW - 1) / LString.MAP_WINDOW)];
+    for (int k = 0; k < windows.length; k++) {
+      long start = (long) k * LString.MAP_WINDOW;
+      long n = Math.min(size - start, LString.MAP_WINDOW + maxChunkBytes);
+      windows[k] = channel.map(FileChannel.MapMode.READ_ONLY, start, n);
+    }
+  }
+
+  //map the UTF-8 file at path
+  public static MappedLString open(Path path) throws IOException {
+    return open(path, StandardCharsets.UTF_8);
+  }
+
+  //map the file at path, whose text is in charset. Malformed input becomes
+  //U+FFFD, as in new String(bytes, charset)
+  public static MappedLString open(Path path, Charset charset) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      //like their decoders, UTF-16 and UTF-32 take the byte order from a
+      //byte order mark, which is dropped, and are big-endian without one
+      byte[] head = new byte[4];
+      int n = Math.max(channel.read(ByteBuffer.wrap(head), 0), 0);
+      long skip = 0;
+      if (charset.equals(StandardCharsets.UTF_16)) {
+        if (n >= 2 && head[0] == (byte) 0xff && head[1] == (byte) 0xfe) {
+          charset = StandardCharsets.UTF_16LE;
+          skip = 2;
+        } else {
+          skip = (n >= 2 && head[0] == (byte) 0xfe && head[1] == (byte) 0xff) ? 2 : 0;
+          charset = StandardCharsets.UTF_16BE;
+        }
+      } else if (charset.name().equals("UTF-32")) {
+        if (n == 4 && head[0] == (byte) 0xff && head[1] == (byte) 0xfe && head[2] == 0 && head[3] == 0) {
+          charset = Charset.forName("UTF-32LE");
+          skip = 4;
+        } else {
+          skip = (n == 4 && head[0] == 0 && head[1] == 0 && head[2] == (byte) 0xfe && head[3] == (byte) 0xff) ? 4 : 0;
+          charset = Charset.forName("UTF-32BE");
+        }
+      }
+      int width = width(charset);
+      if (width > 0) {
+        //a trailing partial char decodes to one U+FFFD
+        long chars = (size - skip + width - 1) / width;
+        if (chars > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException(path + " holds more than " + Integer.MAX_VALUE + " chars");
+        }
+        int chunkCount = (int) ((chars + CHUNK_CHARS - 1) / CHUNK_CHARS);
+        long[] byteStarts = new long[chunkCount + 1];
+        int[] charStarts = new int[chunkCount + 1];
+        for (int i = 0; i < chunkCount; i++) {
+          charStarts[i] = i * CHUNK_CHARS;
+          byteStarts[i] = skip + (long) i * CHUNK_CHARS * width;
+        }
+        charStarts[chunkCount] = (int) chars;
+        byteStarts[chunkCount] = size;
+        return new MappedLString(channel, charset, byteStarts, charStarts, chunkCount, null);
+      }
+      return scan(path, channel, charset, skip, !STATELESS.contains(charset.name()));
+    }
+  }
+
+  //decode the file from byte skip on once, noting where each chunk starts,
+  //and keeping the decoded chunks too if keep is set
+  private static MappedLString scan(Path path, FileChannel channel, Charset charset, long skip,
+      boolean keep) throws IOException {
+    CharsetDecoder decoder = newDecoder(charset);
+    CharBuffer out = CharBuffer.allocate(CHUNK_CHARS);
+    long size = channel.size();
+    long[] byteStarts = new long[16];
+    int[] charStarts = new int[16];
+    List<char[]> decoded = keep ? new ArrayList<>() : null;
+    byteStarts[0] = skip;
+    int chunkCount = 0;
+    long chars = 0;
+    long pos = skip;
+    boolean last = false;
+    while (!last) {
+      long n = Math.min(size - pos, LString.MAP_WINDOW);
+      last = pos + n == size;
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, pos, n);
+      while (true) {
+        CoderResult cr = decoder.decode(in, out, last);
+        if (!cr.isOverflow()) {
+          break;
+        }
+        //out is full, so the next chunk starts at the next byte
+        chars += out.position();
+        if (keep) {
+          decoded.add(Arrays.copyOf(out.array(), out.position()));
+        }
+        out.clear();
+        if (++chunkCount == byteStarts.length) {
+          byteStarts = Arrays.copyOf(byteStarts, chunkCount * 2);
+          charStarts = Arrays.copyOf(charStarts, chunkCount * 2);
+        }
+        byteStarts[chunkCount] = pos + in.position();
+        charStarts[chunkCount] = (int) Math.min(chars, Integer.MAX_VALUE);
+      }
+      pos += in.position();
+    }
+    decoder.flush(out);
+    chars += out.position();
+    if (chars > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(path + " holds more than " + Integer.MAX_VALUE + " chars");
+    }
+    if (out.position() > 0) {
+      chunkCount++;
+      if (keep) {
+        decoded.add(Arrays.copyOf(out.array(), out.position()));
+      }
+    }
+    byteStarts = Arrays.copyOf(byteStarts, chunkCount + 1);
+    charStarts = Arrays.copyOf(charStarts, chunkCount + 1);
+    byteStarts[chunkCount] = size;
+    charStarts[chunkCount] = (int) chars;
+    return new MappedLString(channel, charset, byteStarts, charStarts, chunkCount,
+        keep ? decoded.toArray(new char[0][]) : null);
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+    int i = chunkOf(index);
+    return chunk(i)[index - charStarts[i]];
+  }
+
+  //return a new LString holding chars start..end-1, decoding only the
+  //chunks they fall in
+  public LString substring(int start, int end) {
+    if (start < 0 || start > end || end > length) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+    }
+    LString result = new LString();
+    int pos = start;
+    while (pos < end) {
+      int i = chunkOf(pos);
+      int offset = pos - charStarts[i];
+      int n = Math.min(charStarts[i + 1], end) - pos;
+      result.appendChars(chunk(i), offset, n);
+      pos += n;
+    }
+    return result;
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    return substring(start, end);
+  }
+
+  //the whole text; decodes every chunk not decoded yet
+  public String toString() {
+    char[] result = new char[length];
+    for (int i = 0; i < chunkCount; i++) {
+      char[] chunk = chunk(i);
+      System.arraycopy(chunk, 0, result, charStarts[i], chunk.length);
+    }
+    return new String(result);
+  }
+
+  //number of chunks decoded so far
+  int decodedChunks() {
+    int n = 0;
+    for (char[] chunk : chunks) {
+      if (chunk != null) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  //the chars of chunk i, decoding them on first use
+  private char[] chunk(int i) {
+    char[] chunk = chunks[i];
+    if (chunk == null) {
+      ByteBuffer window = windows[(int) (byteStarts[i] / LString.MAP_WINDOW)];
+      int from = (int) (byteStarts[i] % LString.MAP_WINDOW);
+      int to = from + (int) (byteStarts[i + 1] - byteStarts[i]);
+      chunk = new char[charStarts[i + 1] - charStarts[i]];
+      CharBuffer out = CharBuffer.wrap(chunk);
+      ByteBuffer in = window.slice(from, to - from);
+      if (utf16 != null) {
+        CharBuffer chars = in.order(utf16).asCharBuffer();
+        out.put(chars);
+      } else {
+        decoder.reset();
+        decoder.decode(in, out, true);
+        decoder.flush(out);
+      }
+      //a trailing partial char
+      while (out.hasRemaining()) {
+        out.put('\ufffd');
+      }
+      chunks[i] = chunk;
+    }
+    return chunk;
+  }
+
+  //the chunk holding index; the last one found is tried first
+  private int chunkOf(int index) {
+    if (index >= charStarts[lastChunk] && index < charStarts[lastChunk + 1]) {
+      return lastChunk;
+    }
+    int i = Arrays.binarySearch(charStarts, 0, chunkCount, index);
+    lastChunk = (i < 0) ? -i - 2 : i;
+    return lastChunk;
+  }
+
+  //bytes per char for charsets where that is fixed, otherwise 0
+  private static int width(Charset charset) {
+    if (charset.equals(StandardCharsets.UTF_16BE) || charset.equals(StandardCharsets.UTF_16LE)) {
+      return 2;
+    }
+    CharsetDecoder decoder = charset.newDecoder();
+    boolean singleByte = charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1
+        && decoder.maxCharsPerByte() == 1 && decoder.averageCharsPerByte() == 1;
+    return singleByte ? 1 : 0;
+  }
+
+  private static CharsetDecoder newDecoder(Charset charset) {
+    return charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+}
@@ -0,0 +1,382 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+
+// LString whose chunks and next-links live in one direct ByteBuffer outside
+// the Java heap, so the garbage collector sees a single object no matter how
+// much text it holds. The buffer is split into slots of
+//   [next slot (int)][count (int)][chunkSize chars]
+// linked into a chain like LString's nodes; slots dropped by replace go on a
+// free list for reuse. Call close() (or use try-with-resources) when done.
+// A buffer is limited to 2GB, so one OffHeapLString holds under 1G chars.
+public class OffHeapLString implements Comparable<OffHeapLString>, AutoCloseable {
+
+  private static final int NIL = -1;
+  private static final int NEXT = 0;
+  private static final int COUNT = 4;
+  private static final int CHARS = 8;
+
+  private final int chunkSize;
+  private final int slotSize;
+
+  private ByteBuffer arena;
+  // arena seen as chars, for bulk reads and writes of a chunk
+  private CharBuffer chars;
+  // slots handed out so far; slots below this are in use or on the free list
+  private int slots;
+  private int free = NIL;
+
+  private int length;
+  private int front = NIL;
+
+  // slot last returned by locate and the position of its first char
+  private int lastSlot = NIL;
+  private int lastStart;
+
+  public OffHeapLString() {
+    this(LString.DEFAULT_CHUNK_SIZE);
+  }
+
+  //construct an empty OffHeapLString whose slots hold up to chunkSize chars each
+  public OffHeapLString(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunk size " + chunkSize + " is not positive");
+    }
+    this.chunkSize = chunkSize;
+    slotSize = CHARS + 2 * chunkSize;
+    allocate(16);
+  }
+
+  //Construct OffHeapLString object that is a copy of a String
+  public OffHeapLString(String original) {
+    this(original, LString.DEFAULT_CHUNK_SIZE);
+  }
+
+  public OffHeapLString(String original, int chunkSize) {
+    this(chunkSize);
+    append(NIL, original, 0, original.length());
+  }
+
+  public int length() {
+    checkOpen();
+    return length;
+  }
+
+  public String toString() {
+    checkOpen();
+    char[] result = new char[length];
+    int pos = 0;
+    for (int slot = front; slot != NIL; slot = next(slot)) {
+      int n = count(slot);
+      chars.get(charIndex(slot, 0), result, pos, n);
+      pos += n;
+    }
+    return new String(result);
+  }
+
+  public char charAt(int index) {
+    checkIndex(index);
+    int slot = locate(index);
+    return chars.get(charIndex(slot, index - lastStart));
+  }
+
+  public void setCharAt(int index, char ch) {
+    checkIndex(index);
+    int slot = locate(index);
+    chars.put(charIndex(slot, index - lastStart), ch);
+  }
+
+  //returns a new OffHeapLString, with its own buffer, holding chars start..end-1
+  public OffHeapLString substring(int start, int end) {
+    checkRange(start, end);
+    OffHeapLString result = new OffHeapLString(chunkSize);
+    result.copyFrom(NIL, this, start, end - start);
+    return result;
+  }
+
+  public OffHeapLString replace(int start, int end, OffHeapLString lStr) {
+    //replaces chars start..end-1 with a copy of lStr; the slots that held
+    //the old chars are put on the free list and reused for the copy
+    checkRange(start, end);
+    lStr.checkOpen();
+    OffHeapLString source = (lStr == this) ? substring(0, length) : lStr;
+    int before = cut(start);
+    int last = cut(end);
+    int rest = (last == NIL) ? front : next(last);
+    int removed = (before == NIL) ? front : next(before);
+    while (removed != rest) {
+      int following = next(removed);
+      release(removed);
+      removed = following;
+    }
+    if (before == NIL) {
+      front = rest;
+    } else {
+      setNext(before, rest);
+    }
+    length -= end - start;
+    lastSlot = NIL;
+    //room() links each fresh slot in front of rest
+    copyFrom(before, source, 0, source.length);
+    if (source != lStr) {
+      source.close();
+    }
+    return this;
+  }
+
+  public int compareTo(OffHeapLString anotherLString) {
+    // all comparisons lexicographical, ie B < BB < Ba < a
+    checkOpen();
+    anotherLString.checkOpen();
+    int mine = front;
+    int theirs = anotherLString.front;
+    int i = 0;
+    int j = 0;
+    int remaining = Math.min(length, anotherLString.length);
+    while (remaining > 0) {
+      while (i == count(mine)) {
+        mine = next(mine);
+        i = 0;
+      }
+      while (j == anotherLString.count(theirs)) {
+        theirs = anotherLString.next(theirs);
+        j = 0;
+      }
+      int n = Math.min(remaining, Math.min(count(mine) - i, anotherLString.count(theirs) - j));
+      //CharBuffer.mismatch compares the two spans a vector at a time
+      int k = chars.slice(charIndex(mine, i), n)
+          .mismatch(anotherLString.chars.slice(anotherLString.charIndex(theirs, j), n));
+      if (k >= 0) {
+        return chars.get(charIndex(mine, i + k)) - anotherLString.chars.get(anotherLString.charIndex(theirs, j + k));
+      }
+      i += n;
+      j += n;
+      remaining -= n;
+    }
+    return length - anotherLString.length;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof OffHeapLString)) {
+      return false;
+    }
+    OffHeapLString otherLString = (OffHeapLString) other;
+    return length() == otherLString.length() && compareTo(otherLString) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    //same value as toString().hashCode()
+    checkOpen();
+    int h = 0;
+    for (int slot = front; slot != NIL; slot = next(slot)) {
+      int base = charIndex(slot, 0);
+      for (int i = 0; i < count(slot); i++) {
+        h = 31 * h + chars.get(base + i);
+      }
+    }
+    return h;
+  }
+
+  //drop the buffer; any later use of this OffHeapLString throws
+  //IllegalStateException. Direct buffers cannot be freed explicitly on this
+  //JDK, so the memory goes back once the buffer's cleaner runs
+  public void close() {
+    arena = null;
+    chars = null;
+    front = NIL;
+    free = NIL;
+    lastSlot = NIL;
+    length = 0;
+  }
+
+  //copy n chars of src from off onto the end of this, after slot last
+  //(NIL if empty); returns the new last slot
+  private int copyFrom(int last, OffHeapLString src, int off, int n) {
+    if (n == 0) {
+      return last;
+    }
+    int slot = src.locate(off);
+    int offset = off - src.lastStart;
+    while (n > 0) {
+      int k = Math.min(n, src.count(slot) - offset);
+      int at = src.charIndex(slot, offset);
+      int pos = 0;
+      while (pos < k) {
+        last = room(last);
+        int m = Math.min(k - pos, chunkSize - count(last));
+        chars.put(charIndex(last, count(last)), src.chars, at + pos, m);
+        setCount(last, count(last) + m);
+        length += m;
+        pos += m;
+      }
+      n -= k;
+      offset = 0;
+      slot = src.next(slot);
+    }
+    return last;
+  }
+
+  private int append(int last, String src, int off, int n) {
+    while (n > 0) {
+      last = room(last);
+      int k = Math.min(n, chunkSize - count(last));
+      chars.position(charIndex(last, count(last))).put(src, off, off + k);
+      setCount(last, count(last) + k);
+      length += k;
+      off += k;
+      n -= k;
+    }
+    return last;
+  }
+
+  //return last if it has room left, otherwise a fresh slot linked after it
+  //(or made the front when last is NIL); the fresh slot keeps last's next
+  private int room(int last) {
+    if (last != NIL && count(last) < chunkSize) {
+      return last;
+    }
+    int added = alloc();
+    if (last == NIL) {
+      setNext(added, front);
+      front = added;
+    } else {
+      setNext(added, next(last));
+      setNext(last, added);
+    }
+    return added;
+  }
+
+  //make sure a slot boundary falls at index; returns the slot ending there,
+  //or NIL if index is 0
+  private int cut(int index) {
+    int prev = NIL;
+    int slot = front;
+    while (slot != NIL && index >= count(slot)) {
+      index -= count(slot);
+      prev = slot;
+      slot = next(slot);
+    }
+    if (slot == NIL || index == 0) {
+      return prev;
+    }
+    int rest = count(slot) - index;
+    int tail = alloc();
+    chars.put(charIndex(tail, 0), chars, charIndex(slot, index), rest);
+    setCount(tail, rest);
+    setNext(tail, next(slot));
+    setNext(slot, tail);
+    setCount(slot, index);
+    lastSlot = NIL;
+    return slot;
+  }
+
+  //return the slot holding index, leaving the position of its first char in
+  //lastStart; lookups at or after the last one walk on from there
+  private int locate(int index) {
+    int slot = front;
+    int start = 0;
+    if (lastSlot != NIL && index >= lastStart) {
+      slot = lastSlot;
+      start = lastStart;
+    }
+    while (index - start >= count(slot)) {
+      start += count(slot);
+      slot = next(slot);
+    }
+    lastSlot = slot;
+    lastStart = start;
+    return slot;
+  }
+
+  private int alloc() {
+    int slot;
+    if (free != NIL) {
+      slot = free;
+      free = next(slot);
+    } else {
+      if ((long) (slots + 1) * slotSize > arena.capacity()) {
+        //double, but stop at the most slots a 2GB buffer holds
+        int most = Integer.MAX_VALUE / slotSize;
+        if (slots == most) {
+          throw new IllegalStateException("OffHeapLString cannot grow past " + most + " slots");
+        }
+        allocate(Math.min(Math.max(slots * 2, slots + 1), most));
+      }
+      slot = slots++;
+    }
+    setNext(slot, NIL);
+    setCount(slot, 0);
+    return slot;
+  }
+
+  private void release(int slot) {
+    setNext(slot, free);
+    free = slot;
+  }
+
+  //move to a buffer with room for n slots, keeping the slots in use
+  private void allocate(int n) {
+    long bytes = (long) n * slotSize;
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IllegalStateException("OffHeapLString cannot grow past " + Integer.MAX_VALUE + " bytes");
+    }
+    ByteBuffer grown = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    if (arena != null) {
+      grown.put(arena.clear());
+    }
+    arena = grown;
+    chars = grown.clear().asCharBuffer();
+  }
+
+  private int next(int slot) {
+    return arena.getInt(slot * slotSize + NEXT);
+  }
+
+  private void setNext(int slot, int next) {
+    arena.putInt(slot * slotSize + NEXT, next);
+  }
+
+  private int count(int slot) {
+    return arena.getInt(slot * slotSize + COUNT);
+  }
+
+  private void setCount(int slot, int count) {
+    arena.putInt(slot * slotSize + COUNT, count);
+  }
+
+  //index in chars of char i of slot
+  private int charIndex(int slot, int i) {
+    return (slot * slotSize + CHARS) / 2 + i;
+  }
+
+  private void checkOpen() {
+    if (arena == null) {
+      throw new IllegalStateException("OffHeapLString is closed");
+    }
+  }
+
+  private void checkIndex(int index) {
+    checkOpen();
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+  }
+
+  private void checkRange(int start, int end) {
+    checkOpen();
+    if (start < 0 || start > end || end > length) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.Arrays;
+
+// immutable LString: withCharAt, withReplace and sub return new versions in
+// O(log n) that share every unchanged part of the rope with this one, and
+// this one never changes. Holding on to a version is therefore an O(1)
+// snapshot, and versions can be passed between threads without locking.
+public final class PersistentLString implements CharSequence, Comparable<PersistentLString> {
+
+  public static final PersistentLString EMPTY = new PersistentLString(Rope.EMPTY);
+
+  final Rope rope;
+
+  // results of toString() and hashCode(), filled in on first use; racing
+  // threads can only compute the same values
+  private String cached;
+  private int hash;
+
+  //Construct PersistentLString object that is a copy of a String
+  public PersistentLString(String original) {
+    this(Rope.of(original, 0, original.length()));
+  }
+
+  PersistentLString(Rope rope) {
+    this.rope = rope;
+  }
+
+  //copy of the chars of seq, e.g. an LString, as they are now
+  public static PersistentLString of(CharSequence seq) {
+    if (seq instanceof PersistentLString) {
+      return (PersistentLString) seq;
+    }
+    return (seq.length() == 0) ? EMPTY : new PersistentLString(Rope.of(seq, 0, seq.length()));
+  }
+
+  public int length() {
+    return rope.length();
+  }
+
+  public char charAt(int index) {
+    checkIndex(index);
+    return rope.charAt(index);
+  }
+
+  //this with ch at index; copies only the path down to the leaf holding index
+  public PersistentLString withCharAt(int index, char ch) {
+    checkIndex(index);
+    return new PersistentLString(rope.setCharAt(index, ch));
+  }
+
+  //this with chars start..end-1 replaced by lStr
+  public PersistentLString withReplace(int start, int end, PersistentLString lStr) {
+    checkRange(start, end);
+    return new PersistentLString(rope.replace(start, end, lStr.rope));
+  }
+
+  //chars start..end-1, sharing leaves with this
+  public PersistentLString sub(int start, int end) {
+    checkRange(start, end);
+    if (start == 0 && end == length()) {
+      return this;
+    }
+    return new PersistentLString(rope.substring(start, end));
+  }
+
+  public PersistentLString subSequence(int start, int end) {
+    return sub(start, end);
+  }
+
+  public String toString() {
+    String result = cached;
+    if (result == null) {
+      char[] chars = new char[rope.length()];
+      rope.getChars(0, chars.length, chars, 0);
+      result = new String(chars);
+      cached = result;
+    }
+    return result;
+  }
+
+  public int compareTo(PersistentLString anotherLString) {
+    // all comparisons lexicographical, ie B < BB < Ba < a
+    if (rope == anotherLString.rope) {
+      return 0;
+    }
+    int n = Math.min(length(), anotherLString.length());
+    char[] mine = new char[Math.min(n, Rope.LEAF_SIZE)];
+    char[] theirs = new char[mine.length];
+    for (int pos = 0; pos < n; pos += mine.length) {
+      int k = Math.min(mine.length, n - pos);
+      rope.getChars(pos, pos + k, mine, 0);
+      anotherLString.rope.getChars(pos, pos + k, theirs, 0);
+      int i = Arrays.mismatch(mine, 0, k, theirs, 0, k);
+      if (i >= 0) {
+        return mine[i] - theirs[i];
+      }
+    }
+    return length() - anotherLString.length();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof PersistentLString)) {
+      return false;
+    }
+    PersistentLString otherLString = (PersistentLString) other;
+    return length() == otherLString.length() && compareTo(otherLString) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    //same value as toString().hashCode()
+    int h = hash;
+    if (h == 0 && length() > 0) {
+      h = toString().hashCode();
+      hash = h;
+    }
+    return h;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+    }
+  }
+
+  private void checkRange(int start, int end) {
+    if (start < 0 || start > end || end > length()) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+    }
+  }
+
+}
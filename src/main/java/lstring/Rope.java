@@ -0,0 +1,230 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.Arrays;
+
+// immutable balanced tree of char chunks; nothing is changed after it is
+// built, so ropes can share subtrees freely and edits copy only the path
+// from the root to the chars they touch
+abstract class Rope {
+
+  // most chars put in one leaf when building or merging leaves
+  static final int LEAF_SIZE = 512;
+
+  static final Rope EMPTY = new Leaf(new char[0], 0, 0);
+
+  abstract int length();
+
+  // 0 for a leaf, otherwise one more than the taller child
+  abstract int height();
+
+  abstract char charAt(int index);
+
+  // copy chars start..end-1 into dst starting at dstBegin
+  abstract void getChars(int start, int end, char[] dst, int dstBegin);
+
+  abstract Rope substring(int start, int end);
+
+  // return a rope like this one with ch at index
+  abstract Rope setCharAt(int index, char ch);
+
+  Rope replace(int start, int end, Rope r) {
+    return concat(concat(substring(0, start), r), substring(end, length()));
+  }
+
+  static Rope of(CharSequence seq, int start, int end) {
+    int n = end - start;
+    if (n <= LEAF_SIZE) {
+      if (n == 0) {
+        return EMPTY;
+      }
+      char[] data = new char[n];
+      if (seq instanceof String) {
+        ((String) seq).getChars(start, end, data, 0);
+      } else {
+        for (int i = 0; i < n; i++) {
+          data[i] = seq.charAt(start + i);
+        }
+      }
+      return new Leaf(data, 0, n);
+    }
+    int mid = start + n / 2;
+    return new Concat(of(seq, start, mid), of(seq, mid, end));
+  }
+
+  static Rope of(char[] chars, int offset, int count) {
+    if (count <= LEAF_SIZE) {
+      return (count == 0) ? EMPTY : new Leaf(Arrays.copyOfRange(chars, offset, offset + count), 0, count);
+    }
+    int half = count / 2;
+    return new Concat(of(chars, offset, half), of(chars, offset + half, count - half));
+  }
+
+  // join two ropes, keeping the result AVL-balanced; takes O(log n)
+  static Rope concat(Rope left, Rope right) {
+    if (left.length() == 0) {
+      return right;
+    }
+    if (right.length() == 0) {
+      return left;
+    }
+    if (left instanceof Leaf && right instanceof Leaf
+        && left.length() + right.length() <= LEAF_SIZE) {
+      char[] data = new char[left.length() + right.length()];
+      left.getChars(0, left.length(), data, 0);
+      right.getChars(0, right.length(), data, left.length());
+      return new Leaf(data, 0, data.length);
+    }
+    int hl = left.height();
+    int hr = right.height();
+    if (hl > hr + 1) {
+      Concat c = (Concat) left;
+      return balance(c.left, concat(c.right, right));
+    }
+    if (hr > hl + 1) {
+      Concat c = (Concat) right;
+      return balance(concat(left, c.left), c.right);
+    }
+    return new Concat(left, right);
+  }
+
+  // make a node of left and right, rotating if their heights differ by 2
+  private static Rope balance(Rope left, Rope right) {
+    int hl = left.height();
+    int hr = right.height();
+    if (hl > hr + 1) {
+      Concat c = (Concat) left;
+      if (c.left.height() >= c.right.height()) {
+        return new Concat(c.left, new Concat(c.right, right));
+      }
+      Concat cr = (Concat) c.right;
+      return new Concat(new Concat(c.left, cr.left), new Concat(cr.right, right));
+    }
+    if (hr > hl + 1) {
+      Concat c = (Concat) right;
+      if (c.right.height() >= c.left.height()) {
+        return new Concat(new Concat(left, c.left), c.right);
+      }
+      Concat cl = (Concat) c.left;
+      return new Concat(new Concat(left, cl.left), new Concat(cl.right, c.right));
+    }
+    return new Concat(left, right);
+  }
+
+  // count chars of data starting at offset; the array may be shared with
+  // other leaves but is never written after construction
+  static final class Leaf extends Rope {
+    final char[] data;
+    final int offset;
+    final int count;
+
+    Leaf(char[] data, int offset, int count) {
+      this.data = data;
+      this.offset = offset;
+      this.count = count;
+    }
+
+    int length() {
+      return count;
+    }
+
+    int height() {
+      return 0;
+    }
+
+    char charAt(int index) {
+      return data[offset + index];
+    }
+
+    void getChars(int start, int end, char[] dst, int dstBegin) {
+      System.arraycopy(data, offset + start, dst, dstBegin, end - start);
+    }
+
+    Rope substring(int start, int end) {
+      if (start == 0 && end == count) {
+        return this;
+      }
+      return (start == end) ? EMPTY : new Leaf(data, offset + start, end - start);
+    }
+
+    Rope setCharAt(int index, char ch) {
+      char[] copy = Arrays.copyOfRange(data, offset, offset + count);
+      copy[index] = ch;
+      return new Leaf(copy, 0, count);
+    }
+  }
+
+  static final class Concat extends Rope {
+    final Rope left;
+    final Rope right;
+    final int length;
+    final int height;
+
+    Concat(Rope left, Rope right) {
+      this.left = left;
+      this.right = right;
+      length = left.length() + right.length();
+      height = 1 + Math.max(left.height(), right.height());
+    }
+
+    int length() {
+      return length;
+    }
+
+    int height() {
+      return height;
+    }
+
+    char charAt(int index) {
+      Rope r = this;
+      while (r instanceof Concat) {
+        Concat c = (Concat) r;
+        int split = c.left.length();
+        if (index < split) {
+          r = c.left;
+        } else {
+          index -= split;
+          r = c.right;
+        }
+      }
+      return r.charAt(index);
+    }
+
+    void getChars(int start, int end, char[] dst, int dstBegin) {
+      int split = left.length();
+      if (start < split) {
+        int leftEnd = Math.min(end, split);
+        left.getChars(start, leftEnd, dst, dstBegin);
+        dstBegin += leftEnd - start;
+      }
+      if (end > split) {
+        right.getChars(Math.max(start, split) - split, end - split, dst, dstBegin);
+      }
+    }
+
+    Rope substring(int start, int end) {
+      if (start == 0 && end == length) {
+        return this;
+      }
+      int split = left.length();
+      if (end <= split) {
+        return left.substring(start, end);
+      }
+      if (start >= split) {
+        return right.substring(start - split, end - split);
+      }
+      return concat(left.substring(start, split), right.substring(0, end - split));
+    }
+
+    Rope setCharAt(int index, char ch) {
+      int split = left.length();
+      if (index < split) {
+        return new Concat(left.setCharAt(index, ch), right);
+      }
+      return new Concat(left, right.setCharAt(index - split, ch));
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/* Stephanie Mason
+*/
+
+package lstring;
+
+import java.util.Arrays;
+
+// LString kept as a balanced rope of char chunks instead of a linked list,
+// so substring and replace take O(log n) rather than walking and copying.
+// Ropes share structure internally but are never changed in place, so a
+// result never observably shares chars with the LString it came from.
+public class RopeLString implements Comparable<RopeLString> {
+
+  private Rope rope;
+
+  // result of the last toString(), dropped whenever the chars change
+  private String cached;
+
+  public RopeLString() {
+    rope = Rope.EMPTY;
+  }
+
+  //Construct RopeLString object that is a copy of a String
+  public RopeLString(String original) {
+    rope = Rope.of(original, 0, original.length());
+  }
+
+  private RopeLString(Rope rope) {
+    this.rope = rope;
+  }
+
+  //return length of RopeLString
+  public int length() {
+    return rope.length();
+  }
+
+  public String toString() {
+    if (cached == null) {
+      char[] result = new char[rope.length()];
+      rope.getChars(0, result.length, result, 0);
+      cached = new String(result);
+    }
+    return cached;
+  }
+
+  public char charAt(int index) {
+    checkIndex(index);
+    return rope.charAt(index);
+  }
+
+  public void setCharAt(int index, char ch) {
+    //copies only the path down to the leaf holding index, so any
+    //substring or replace result sharing that leaf keeps the old char
+    checkIndex(index);
+    rope = rope.setCharAt(index, ch);
+    cached = null;
+  }
+
+  public RopeLString substring(int start, int end) {
+    checkRange(start, end);
+    return new RopeLString(rope.substring(start, end));
+  }
+
+  public RopeLString replace(int start, int end, RopeLString lStr) {
+    checkRange(start, end);
+    rope = rope.replace(start, end, lStr.rope);
+    cached = null;
+    return this;
+  }
+
+  public int compareTo(RopeLString anotherLString) {
+    // all comparisons lexicographical, ie B < BB < Ba < a
+    int n = Math.min(length(), anotherLString.length());
+    char[] mine = new char[Math.min(n, Rope.LEAF_SIZE)];
+    char[] theirs = new char[mine.length];
+    for (int pos = 0; pos < n; pos += mine.length) {
+      int k = Math.min(mine.length, n - pos);
+      rope.getChars(pos, pos + k, mine, 0);
+      anotherLString.rope.getChars(pos, pos + k, theirs, 0);
+      int i = Arrays.mismatch(mine, 0, k, theirs, 0, k);
+      if (i >= 0) {
+        return mine[i] - theirs[i];
+      }
+    }
+    return length() - anotherLString.length();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof RopeLString)) {
+      return false;
+    }
+    RopeLString otherLString = (RopeLString) other;
+    return length() == otherLString.length() && compareTo(otherLString) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return toString().hashCode();
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+    }
+  }
+
+  private void checkRange(int start, int end) {
+    if (start < 0 || start > end || end > length()) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+package lstring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class AtomicLStringTest {
+   // Maximum 10 seconds for all tests
+   @Rule public Timeout timeout = new Timeout(10000);
+
+   private String testString = "Readers never wait for writers here.";
+
+   @Test public void test01aSingleThreaded() {
+      AtomicLString testLString = new AtomicLString(testString);
+      PersistentLString before = testLString.snapshot();
+      testLString.setCharAt(0, 'r');
+      testLString.replace(8, 13, new LString("always"));
+      String expected = "r" + testString.substring(1, 8) + "always" + testString.substring(13);
+      assertEquals("edits are wrong", expected, testLString.toString());
+      assertEquals("snapshot changed", testString, before.toString());
+      assertEquals("hashCode() is wrong", expected.hashCode(), testLString.hashCode());
+      assertTrue(new AtomicLString("Ba").compareTo(new AtomicLString("a")) < 0);
+      assertEquals(new AtomicLString(testString), new AtomicLString(testString));
+   }
+
+   @Test(expected=IndexOutOfBoundsException.class)
+   public void test01bSetCharAtOutOfBounds() {
+      new AtomicLString("a").setCharAt(1, 'b');
+   }
+
+   @Test public void test02aNoLostUpdates() throws InterruptedException {
+      final int threads = 4;
+      final int inserts = 500;
+      AtomicLString shared = new AtomicLString();
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      List<Thread> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+         final LString mark = new LString(String.valueOf((char)('a' + t)));
+         workers.add(new Thread(() -> {
+            for (int n = 0; n < inserts; n++)
+               shared.replace(0, 0, mark);
+         }));
+      }
+      workers.add(new Thread(() -> {
+         int last = 0;
+         while (last < threads * inserts) {
+            PersistentLString snapshot = shared.snapshot();
+            if (snapshot.length() < last)
+               failure.compareAndSet(null, new AssertionError("length went back to " + snapshot.length()));
+            last = snapshot.length();
+         }
+      }));
+      for (Thread worker : workers)
+         worker.start();
+      for (Thread worker : workers)
+         worker.join();
+      if (failure.get() != null)
+         throw new AssertionError(failure.get());
+      String result = shared.toString();
+      assertEquals("inserts were lost", threads * inserts, result.length());
+      for (int t = 0; t < threads; t++) {
+         final char mark = (char)('a' + t);
+         assertEquals("inserts of " + mark + " were lost",
+               inserts, result.chars().filter(ch -> ch == mark).count());
+      }
+   }
+}
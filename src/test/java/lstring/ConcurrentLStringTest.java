@@ -0,0 +1,88 @@
+package lstring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class ConcurrentLStringTest {
+   // Maximum 10 seconds for all tests
+   @Rule public Timeout timeout = new Timeout(10000);
+
+   private String testString = "Shared between threads, in several chunks.";
+
+   @Test public void test01aSingleThreaded() {
+      ConcurrentLString testLString = new ConcurrentLString(testString, 4, 3);
+      assertEquals("toString() is wrong", testString, testLString.toString());
+      for (int i = 0; i < testString.length(); i++)
+         assertEquals("charAt(" + i + ") is wrong", testString.charAt(i), testLString.charAt(i));
+      testLString.setCharAt(5, '!');
+      testLString.replace(0, 6, new LString("xyzzy!"));
+      testLString.replace(10, 20, new LString("ab"));
+      testLString.replace(testLString.length(), testLString.length(), new LString("end"));
+      String expected = "xyzzy!" + testString.substring(6, 10) + "ab" + testString.substring(20) + "end";
+      assertEquals("replace is wrong", expected, testLString.toString());
+      assertEquals("substring is wrong", expected.substring(3, 17), testLString.substring(3, 17).toString());
+      assertEquals("hashCode() is wrong", expected.hashCode(), testLString.hashCode());
+      testLString.replace(0, testLString.length(), new LString());
+      assertEquals("replace of everything is wrong", "", testLString.toString());
+   }
+
+   @Test public void test02aDisjointWritersWithSplicer() throws InterruptedException {
+      final int threads = 8;
+      final int region = 4096;
+      final int rounds = 200;
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < threads * region; i++)
+         sb.append('.');
+      final int base = sb.length();
+      ConcurrentLString shared = new ConcurrentLString(sb.toString(), 256, 16);
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      List<Thread> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+         final int start = t * region;
+         workers.add(new Thread(() -> {
+            for (int round = 0; round < rounds; round++) {
+               char ch = (char)('a' + round % 26);
+               for (int i = start; i < start + region; i += 7)
+                  shared.setCharAt(i, ch);
+               for (int i = start; i < start + region; i += 7)
+                  if (shared.charAt(i) != ch)
+                     failure.compareAndSet(null, new AssertionError("lost write at " + i));
+            }
+         }));
+      }
+      // moves no position inside the regions, only the chars after them
+      workers.add(new Thread(() -> {
+         LString tail = new LString("xy");
+         LString empty = new LString();
+         for (int round = 0; round < rounds * 5; round++) {
+            shared.replace(base, base, tail);
+            shared.replace(base, base + 2, empty);
+         }
+      }));
+      workers.add(new Thread(() -> {
+         for (int round = 0; round < rounds; round++) {
+            int length = shared.toString().length();
+            if (length != base && length != base + 2)
+               failure.compareAndSet(null, new AssertionError("torn length " + length));
+         }
+      }));
+      for (Thread worker : workers)
+         worker.start();
+      for (Thread worker : workers)
+         worker.join();
+      if (failure.get() != null)
+         throw new AssertionError(failure.get());
+      assertEquals("length after splices is wrong", base, shared.length());
+      char last = (char)('a' + (rounds - 1) % 26);
+      for (int t = 0; t < threads; t++)
+         for (int i = t * region; i < (t + 1) * region; i += 7)
+            assertEquals("final char at " + i + " is wrong", last, shared.charAt(i));
+   }
+}
@@ -0,0 +1,60 @@
+package lstring;
+
+import java.util.List;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class LStringMatcherTest {
+   // Maximum 1 second for all tests
+   @Rule public Timeout timeout = new Timeout(1000);
+
+   private String testString = "ushers said she sees his hers";
+
+   private String describe(List<LStringMatcher.Match> matches) {
+      StringBuilder sb = new StringBuilder();
+      for (LStringMatcher.Match match : matches)
+         sb.append(match.pattern()).append('@').append(match.start()).append('-').append(match.end()).append(' ');
+      return sb.toString().trim();
+   }
+
+   @Test public void test01aFindAll() {
+      LStringMatcher matcher = new LStringMatcher(
+            new LString("he"), new LString("she"), new LString("his"), new LString("hers"));
+      assertEquals("patternCount() is wrong", 4, matcher.patternCount());
+      assertEquals("findAll is wrong",
+            "1@1-4 0@2-4 3@2-6 1@12-15 0@13-15 2@21-24 0@25-27 3@25-29",
+            describe(matcher.findAll(new LString(testString, 4))));
+   }
+
+   @Test public void test02aFindDisjointLeftmostLongest() {
+      LStringMatcher matcher = new LStringMatcher(
+            new LString("he"), new LString("she"), new LString("hers"), new LString("ushe"));
+      assertEquals("findDisjoint is wrong",
+            "3@0-4 1@12-15 2@25-29",
+            describe(matcher.findDisjoint(new LString(testString, 4))));
+      matcher = new LStringMatcher(new LString("a"), new LString("aab"), new LString("aa"));
+      assertEquals("findDisjoint should prefer the longest match at a start",
+            "2@0-2 1@2-5 0@5-6", describe(matcher.findDisjoint(new LString("aaaaba"))));
+   }
+
+   @Test public void test03aWideChars() {
+      LStringMatcher matcher = new LStringMatcher(new LString("中文"), new LString("文"));
+      assertEquals("findAll over wide chars is wrong",
+            "0@1-3 1@2-3 1@4-5", describe(matcher.findAll(new LString("x中文y文"))));
+   }
+
+   @Test public void test04aNoMatches() {
+      LStringMatcher matcher = new LStringMatcher(new LString("xyz"));
+      assertTrue("findAll found a match", matcher.findAll(new LString(testString)).isEmpty());
+      assertTrue("findDisjoint found a match", matcher.findDisjoint(new LString()).isEmpty());
+   }
+
+   @Test(expected=IllegalArgumentException.class)
+   public void test05aEmptyPattern() {
+      new LStringMatcher(new LString("a"), new LString());
+   }
+}
@@ -0,0 +1,1568 @@
+package lstring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.lang.Math.signum;
+import static java.lang.Math.random;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import org.junit.runner.*;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runners.Parameterized;
+
+import static org.junit.Assert.*;
+import static org.junit.runners.Parameterized.*;
+
+public class LStringTest {
+
+   private static class TestPhase {
+      String name;
+      int number;
+      Class[] testClasses;
+      
+      TestPhase(String name, int number, Class... testClasses) {
+         this.name = name;
+         this.number = number;
+         this.testClasses = testClasses;
+      }
+   }
+
+   private static final TestPhase[] testPhases =
+         {new TestPhase("constructor, length, toString", 13,
+               EmptyStringTest.class, // Test construction of empty strings
+               LStringOfStringTest.class, // Test construction of LStrings from Strings
+               LStringFactoryTest.class), // Test LString.of factories
+          new TestPhase("compareTo and equals", 22,
+               LStringCompareToTest.class, // Test compareTo and equals for LStrings
+               LStringCharSequenceTest.class), // Test LString as CharSequence and Comparable
+          new TestPhase("charAt and setCharAt", 33,
+               LStringCharAtTest.class, // Test charAt and setCharAt
+               LStringCursorTest.class), // Test cursors and iterators
+          new TestPhase("substring", 63,
+               LStringSubStringTestSpecial.class, // Test special cases of substring
+               LStringSubStringTest.class), // Test substrings of longer strings
+          new TestPhase("replace", 46,
+               LStringReplaceTestSpecial.class, // Test special cases of replace
+               LStringReplaceTest.class, // Test replace with longer strings
+               LStringNodePoolTest.class, // Test replace with pooled nodes
+               LStringBatchTest.class, // Test append and insertAll
+               LStringReplaceAllTest.class), // Test replaceAll of many patterns
+          new TestPhase("indexOf and findAll", 6,
+               LStringSearchTest.class), // Test searching for LStrings
+          new TestPhase("special", 15,
+               LStringSpecialTest.class, // Odd and special tests
+               LStringLatin1Test.class, // Test switching between Latin-1 and UTF-16 chunks
+               LStringParallelTest.class) // Test fork/join bulk operations
+         };
+   
+   public static void main(String[] args) {
+      for (TestPhase phase : testPhases) {
+         String tests = (phase.number == 1) ? "test" : "tests";
+         System.out.println("Running " + phase.name + " tests (" + phase.number + " " + tests + ")");
+         Boolean success = new TestRunner().run(phase.testClasses);
+         System.out.println();
+         if (!success) {
+            System.out.println("Test failures: abandoning other phases.");
+            System.exit(1);
+         }
+      }
+      System.out.println("Congratulations! All tests passed.");
+   }
+   
+   static class TestRunner {
+      public boolean run(Class<?>... classes) {
+          JUnitCore core = new JUnitCore();
+          core.addListener(new TestListener(System.out));
+          Result result = core.run(classes);
+          printResult(System.out, result);
+          return result.wasSuccessful();
+      }
+      
+      public void printResult(PrintStream stream, Result result) {
+         // Header
+         stream.printf("Time: %.3f%n", result.getRunTime()/1000.0);
+
+         // Print Failures
+         List<Failure> failures = result.getFailures();
+         if (failures.size() > 0) {
+            stream.println();
+            String format = (failures.size() == 1) ?
+                  "There was %d failure:%n" :
+                  "There were %d failures:%n";
+            stream.printf(format, failures.size());
+            int failNo = 0;
+            for (Failure fail : failures) {
+               stream.printf("%d) %s%n", ++failNo, fail.getTestHeader());
+               Throwable ex = fail.getException();
+               stream.println(ex);
+               int ignored = 0;
+               for (StackTraceElement elt : ex.getStackTrace()) {
+                  String className = elt.getClassName();
+                  if (className.startsWith("lstring.LString") || className.startsWith("org.junit.Assert")) {
+                     if (ignored != 0) {
+                        stream.printf("        ... %d more%n", ignored);
+                        ignored = 0;
+                     }
+                     stream.println("        at " + elt);
+                  } else
+                     ignored++;
+               }
+               if (ignored != 0)
+                  stream.printf("        ... %d more%n", ignored);
+            }
+            stream.println();
+         }
+         
+         // Footer
+         int runCount = result.getRunCount();
+         String tests = (runCount == 1) ? "test" : "tests";
+         int ignoreCount = result.getIgnoreCount();
+         String ignoreTests = (ignoreCount == 1) ? "test" : "tests";
+         if (runCount == 0) {
+            if (ignoreCount == 0)
+               stream.printf("No tests were run.");
+            else
+               stream.printf("No tests were run (%d %s ignored.)",
+                  ignoreCount, ignoreTests);
+         } else {
+            if (result.wasSuccessful())
+               stream.printf("OK! (%d %s passed", runCount, tests);
+            else
+               stream.printf("Test Failed! (%d of %d %s failed",
+                     result.getFailureCount(), runCount, tests);
+            if (result.getIgnoreCount() != 0)
+               stream.printf(", %d %s ignored", ignoreCount, ignoreTests);
+            stream.println(".)");
+         }
+      }
+   }
+   
+   static class TestListener extends RunListener {
+      private final PrintStream stream;
+      private boolean testStarted = false;
+      
+      public TestListener(PrintStream stream) {
+         this.stream = stream;
+      }
+        
+      @Override
+      public void testRunStarted(Description description) {
+         stream.append("Starting tests: ");
+         testStarted = false;
+      }
+      
+      @Override
+      public void testRunFinished(Result result) {
+         stream.println();
+      }
+      
+      @Override
+      public void testStarted(Description description) {
+         testStarted = true;
+      }
+      
+      @Override
+      public void testFailure(Failure failure) {
+         stream.append('E');
+         testStarted = false;
+      }
+      
+      @Override
+      public void testFinished(Description description) {
+         if (testStarted)
+            stream.append('.');
+         testStarted = false;
+      }
+      
+      @Override
+      public void testIgnored(Description description) {
+         stream.append('I');
+      }
+   }
+   
+   
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class EmptyStringTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      @Test public void t01aEmptyConstructorIsEmptyString() {
+         assertEquals("LString().toString() is not the empty string.",
+               "", new LString().toString());
+      }
+      
+      @Test public void t01bEmptyConstructorHasZeroLength() {
+         assertEquals("LString().length() is not zero.",
+               0, new LString().length());
+      }
+      
+      @Test public void t02aEmptyConstructorIsEmptyString() {
+         assertEquals("LString(\"\").toString() is not the empty string.",
+               "", new LString("").toString());
+      }
+      
+      @Test public void t02bEmptyConstructorHasZeroLength() {
+         assertEquals("LString(\"\").length() is not zero.",
+               0, new LString("").length());
+      }
+   }
+   
+   @RunWith(Parameterized.class)
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringOfStringTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      @Parameters
+      public static Collection<Object[]> data() {
+         return Arrays.asList(new Object[][] {
+               {"a"}, {"ab"}, {"This is a long string."}});
+      }
+      
+      @Parameter
+      public String testString;
+
+      @Before public void setUp() { }      
+      
+      @Test public void t11aLStringOfStringToString() {
+         assertEquals("LString(\"" + testString + "\").toString() is wrong.",
+               testString, new LString(testString).toString());
+      }
+      
+      @Test public void t11aLStringOfStringLength() {
+         assertEquals("LString(\"" + testString + "\").length() is wrong.",
+               testString.length(), new LString(testString).length());
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringFactoryTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      private String testString = "A string spanning more than one chunk of chars.";
+
+      @Test public void t12aOfCharArray() {
+         LString testLString = LString.of(testString.toCharArray());
+         assertEquals("LString.of(char[]) is wrong",
+               testString, testLString.toString());
+         assertEquals("LString.of(char[]).length() is wrong",
+               testString.length(), testLString.length());
+      }
+
+      @Test public void t12bOfCharArrayRange() {
+         assertEquals("LString.of(char[], 2, 10) is wrong",
+               testString.substring(2, 12), LString.of(testString.toCharArray(), 2, 10).toString());
+      }
+
+      @Test public void t12cOfCharSequence() {
+         assertEquals("LString.of(CharSequence) is wrong",
+               testString, LString.of(new StringBuilder(testString)).toString());
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringMapFileTest {
+      // Maximum 1 second for all tests
+      @Rule public Timeout timeout = new Timeout(1000);
+
+      @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+      private String testString = "Mapped \u00e9t\u00e9 text \u4e2d\ud83d\ude00 over many chunks. ";
+
+      private Path write(String text, Charset charset) throws IOException {
+         Path file = folder.newFile().toPath();
+         Files.write(file, text.getBytes(charset));
+         return file;
+      }
+
+      @Test public void t13aMapFileUtf8() throws IOException {
+         StringBuilder sb = new StringBuilder();
+         while (sb.length() < 20000)
+            sb.append(testString);
+         String text = sb.toString();
+         LString testLString = LString.mapFile(write(text, StandardCharsets.UTF_8));
+         assertEquals("mapFile(Path) is wrong", text, testLString.toString());
+         assertEquals("mapFile(Path) length is wrong", text.length(), testLString.length());
+      }
+
+      @Test public void t13bMapFileCharset() throws IOException {
+         Charset utf16 = StandardCharsets.UTF_16LE;
+         assertEquals("mapFile(Path, Charset) is wrong",
+               testString, LString.mapFile(write(testString, utf16), utf16).toString());
+         assertEquals("mapFile of an empty file is not empty",
+               "", LString.mapFile(write("", utf16), utf16).toString());
+      }
+
+      @Test public void t13cMapFileMalformed() throws IOException {
+         Path file = folder.newFile().toPath();
+         byte[] bytes = {'a', (byte) 0xc3, 'b', (byte) 0xe4, (byte) 0xb8};
+         Files.write(file, bytes);
+         assertEquals("malformed input is not replaced like String does",
+               new String(bytes, StandardCharsets.UTF_8), LString.mapFile(file).toString());
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringStreamTest {
+      // Maximum 1 second for all tests
+      @Rule public Timeout timeout = new Timeout(1000);
+
+      private String longString;
+
+      @Before public void setUp() {
+         StringBuilder sb = new StringBuilder();
+         for (int i = 0; sb.length() < 3 * LString.WRITE_BUFFER; i++)
+            sb.append("Streamed text \u00e9\u4e2d\ud83d\ude00 ").append(i);
+         longString = sb.toString();
+      }
+
+      @Test public void t14aRead() throws IOException {
+         LString testLString = LString.read(new StringReader(longString), 7);
+         assertEquals("read(Reader, int) is wrong", longString, testLString.toString());
+         assertEquals("read(Reader, int) length is wrong", longString.length(), testLString.length());
+         assertEquals("read of an empty Reader is not empty",
+               "", LString.read(new StringReader(""), 16).toString());
+      }
+
+      @Test public void t14bWriteToAppendable() throws IOException {
+         LString testLString = new LString(longString, 5);
+         StringWriter writer = new StringWriter();
+         testLString.writeTo(writer);
+         assertEquals("writeTo(Writer) is wrong", longString, writer.toString());
+         StringBuilder sb = new StringBuilder("x");
+         testLString.writeTo(sb);
+         assertEquals("writeTo(StringBuilder) is wrong", "x" + longString, sb.toString());
+         CharArrayWriter other = new CharArrayWriter();
+         new LString().writeTo(other);
+         assertEquals("writeTo of an empty LString wrote chars", 0, other.size());
+      }
+
+      @Test public void t14cWriteToChannel() throws IOException {
+         // shift the text so that surrogate pairs straddle the write buffers
+         for (String text : new String[] {longString, "." + longString, ".." + longString}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new LString(text, 3).writeTo(Channels.newChannel(bytes), StandardCharsets.UTF_8);
+            assertArrayEquals("writeTo(channel, UTF-8) is wrong",
+                  text.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+         }
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         new LString(longString).writeTo(Channels.newChannel(bytes), StandardCharsets.ISO_8859_1);
+         assertArrayEquals("writeTo(channel, ISO-8859-1) is wrong",
+               longString.getBytes(StandardCharsets.ISO_8859_1), bytes.toByteArray());
+      }
+   }
+
+   @RunWith(Parameterized.class)
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringCompareToTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      @Parameters
+      public static Collection<Object[]> data() {
+         return Arrays.asList(new Object[][] {
+               {"abc", "abd", -1},
+               {"", "a", -1}, {"a", "ab", -1}, {"abc", "abcd", -1},
+               {"B", "a", -1}, {"BB", "Ba", -1},
+               {"", "", 0}, {"a", "a", 0}, {"abc", "abc", 0}});
+      }
+      
+      @Parameter(0) public String testString1;
+      
+      @Parameter(1) public String testString2;
+      
+      @Parameter(2) public int result;
+      
+      @Test public void t21aTestCompareTo() {
+         LString testLString1 = new LString(testString1);
+         LString testLString2 = new LString(testString2);
+         if (result == 0) {
+            assertEquals("compareTo of equal LStrings is not zero",
+                  result, testLString1.compareTo(testLString2));
+         } else {
+            assertEquals("compareTo of \"" + testString1 + "\" and \"" + testString2 + "\" wrong",
+                  result, (int)signum(testLString1.compareTo(testLString2)));
+            assertEquals("compareTo of \"" + testString2 + "\" and \"" + testString1 + "\" wrong",
+                  -result, (int)signum(testLString2.compareTo(testLString1)));
+         }
+      }
+
+      @Test public void t22aTestEquals() {
+         LString testLString1 = new LString(testString1);
+         LString testLString2 = new LString(testString2);
+         assertEquals("equals of \"" + testString1 + "\" and \"" + testString2 + "\" wrong",
+               result == 0, testLString1.equals(testLString2));
+         assertEquals("equals of \"" + testString2 + "\" and \"" + testString1 + "\" wrong",
+               result == 0, testLString2.equals(testLString1));
+      }
+   }        
+   
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringCharSequenceTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      @Test public void t23aSortLStrings() {
+         LString[] lStrings = {new LString("a"), new LString("Ba"), new LString("B"), new LString("BB")};
+         Arrays.sort(lStrings);
+         assertEquals("sorted LStrings are wrong", "[B, BB, Ba, a]", Arrays.toString(lStrings));
+      }
+
+      @Test public void t24aHashCodeMatchesString() {
+         String testString = "A string whose hash spans more than one chunk.";
+         LString testLString = new LString(testString, 4);
+         assertEquals("hashCode() is not String's hashCode()",
+               testString.hashCode(), testLString.hashCode());
+         testLString.setCharAt(5, 'x');
+         assertEquals("hashCode() after setCharAt is wrong",
+               new LString(testLString.toString()).hashCode(), testLString.hashCode());
+         testLString.replace(0, 3, new LString("xyzzy"));
+         assertEquals("hashCode() after replace is wrong",
+               testLString.toString().hashCode(), testLString.hashCode());
+      }
+
+      @Test public void t24bEqualLStringsAsKeys() {
+         java.util.Set<LString> set = new java.util.HashSet<>();
+         set.add(new LString("abc"));
+         assertTrue("equal LString not found in HashSet", set.contains(new LString("abc", 2)));
+      }
+
+      @Test public void t23bRegexOverLString() {
+         LString testLString = new LString("spans chunks: 12345 and more", 4);
+         java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("[0-9]+").matcher(testLString);
+         assertTrue("regex did not find digits", matcher.find());
+         assertEquals("regex match is wrong", "12345", matcher.group());
+      }
+   }
+
+   @RunWith(Parameterized.class)
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringCharAtTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      @Parameters
+      public static Collection<Object[]> data() {
+         return Arrays.asList(new Object[][] {
+               {"a"}, {"ab"}, {"This is a longer string."}});
+      }
+      
+      static char newChar = 'x'; // Some char not listed above.
+      
+      @Parameter public String testString;
+      
+      @Test public void t31aTestCharAt() {
+         LString testLString = new LString(testString);
+         assertEquals("charAt(0) is not \'" + testString.charAt(0) +"\'",
+               testString.charAt(0), testLString.charAt(0));
+         if (testString.length() > 1) {
+            // Test the last character
+            int index = testString.length() - 1;
+            assertEquals("charAt(length - 1) is not \'" + testString.charAt(index) +"\'",
+                  testString.charAt(index), testLString.charAt(index));
+         }
+         if (testString.length() > 2) {
+            // Test a random character in the middle
+            int index = 1 + (int)((testString.length() - 2) * random());
+            assertEquals("charAt(" + index + ") is not \'" + testString.charAt(index) + "\'",
+                  testString.charAt(index), testLString.charAt(index));
+         }
+      }
+      
+      @Test public void t32aTestSetCharAt() {
+         LString testLString = new LString(testString);
+         testLString.setCharAt(0, newChar);
+         assertEquals("charAt(0) is not \'" + newChar +"\'",
+               newChar, testLString.charAt(0));
+         if (testString.length() > 1) {
+            // Test the last character
+            int index = testString.length() - 1;
+            testLString.setCharAt(index, newChar);
+            assertEquals("charAt(length - 1) is not \'" + newChar +"\'",
+                  newChar, testLString.charAt(index));
+         }
+         if (testString.length() > 2) {
+            // Test a random character in the middle
+            int index = 1 + (int)((testString.length() - 2) * random());
+            testLString.setCharAt(index, newChar);
+            assertEquals("charAt(" + index + ") is not \'" + newChar + "\'",
+                  newChar, testLString.charAt(index));
+         }
+      }
+      
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void t33aTestIndexOutOfBoundsCharAtMinus1() {
+         LString testLString = new LString(testString);
+         testLString.charAt(-1);
+      }
+      
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void t33bTestIndexOutOfBoundsCharAtLength() {
+         LString testLString = new LString(testString);
+         testLString.charAt(testString.length());
+      }
+      
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void t34aTestIndexOutOfBoundsSetCharAtMinus1() {
+         LString testLString = new LString(testString);
+         testLString.setCharAt(-1, newChar);
+      }
+      
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void t34bTestIndexOutOfBoundsSetCharAtLength() {
+         LString testLString = new LString(testString);
+         testLString.setCharAt(testString.length(), newChar);
+      }
+
+      @Test public void t35aToStringAfterSetCharAt() {
+         LString testLString = new LString(testString);
+         assertEquals("toString() is wrong", testString, testLString.toString());
+         int index = testString.length() - 1;
+         testLString.setCharAt(index, newChar);
+         assertEquals("toString() after setCharAt(length - 1) is wrong",
+               testString.substring(0, index) + newChar, testLString.toString());
+      }
+
+      @Test public void t36aIndexedCharAtAfterReplace() {
+         LString testLString = new LString(testString, 2);
+         testLString.setIndexed(true);
+         assertEquals("indexed charAt(length - 1) is wrong",
+               testString.charAt(testString.length() - 1), testLString.charAt(testString.length() - 1));
+         String insert = "xyzzy";
+         testLString.replace(1, 1, new LString(insert));
+         String expected = testString.substring(0, 1) + insert + testString.substring(1);
+         for (int i = 0; i < expected.length(); i++)
+            assertEquals("indexed charAt(" + i + ") after replace is wrong",
+                  expected.charAt(i), testLString.charAt(i));
+      }
+
+      @Test public void t36bIndexedCharAtBetweenReplaces() {
+         LString testLString = new LString(testString, 3);
+         testLString.setIndexed(true);
+         StringBuilder expected = new StringBuilder(testString);
+         Random random = new Random(11);
+         for (int n = 0; n < 500; n++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(Math.min(5, expected.length() - start) + 1);
+            String insert = "xyzzy".substring(random.nextInt(6));
+            if (expected.length() > 60)
+               insert = "";
+            testLString.replace(start, end, new LString(insert));
+            expected.replace(start, end, insert);
+            for (int k = 0; k < 3 && expected.length() > 0; k++) {
+               int i = random.nextInt(expected.length());
+               assertEquals("indexed charAt(" + i + ") between replaces is wrong",
+                     expected.charAt(i), testLString.charAt(i));
+            }
+         }
+         assertEquals("replaces with index are wrong", expected.toString(), testLString.toString());
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringCursorTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      private String testString = "A cursor walks over more than one chunk.";
+
+      @Test public void t37aCursorNextAndSet() {
+         LString testLString = new LString(testString, 4);
+         LString.Cursor cursor = testLString.cursor();
+         StringBuilder sb = new StringBuilder();
+         while (cursor.hasNext()) {
+            char ch = cursor.next();
+            sb.append(ch);
+            if (ch == ' ')
+               cursor.set('_');
+         }
+         assertEquals("cursor did not visit every char", testString, sb.toString());
+         assertEquals("cursor set is wrong",
+               testString.replace(' ', '_'), testLString.toString());
+      }
+
+      @Test public void t37bCursorSeek() {
+         LString testLString = new LString(testString, 4);
+         LString.Cursor cursor = testLString.cursor(9);
+         assertEquals("cursor(9).next() is wrong", testString.charAt(9), cursor.next());
+         cursor.seek(2);
+         assertEquals("seek(2).next() is wrong", testString.charAt(2), cursor.next());
+         cursor.seek(testString.length());
+         assertFalse("cursor at length has next", cursor.hasNext());
+      }
+
+      @Test public void t37cIterators() {
+         LString testLString = new LString(testString, 4);
+         StringBuilder boxed = new StringBuilder();
+         for (char ch : testLString)
+            boxed.append(ch);
+         assertEquals("iterator() is wrong", testString, boxed.toString());
+         StringBuilder unboxed = new StringBuilder();
+         testLString.charIterator().forEachRemaining((int ch) -> unboxed.append((char)ch));
+         assertEquals("charIterator() is wrong", testString, unboxed.toString());
+      }
+
+      @Test public void t37eSpliterators() {
+         LString testLString = new LString(testString, 4);
+         java.util.Spliterator.OfInt chars = testLString.charSpliterator();
+         assertEquals("charSpliterator() size is wrong", testString.length(), chars.getExactSizeIfKnown());
+         assertTrue("charSpliterator() is not SUBSIZED",
+               chars.hasCharacteristics(java.util.Spliterator.SUBSIZED));
+         StringBuilder sb = new StringBuilder();
+         testLString.spliterator().forEachRemaining(sb::append);
+         assertEquals("spliterator() is wrong", testString, sb.toString());
+         assertEquals("chars() is wrong",
+               testString.chars().filter(ch -> ch == 'o').count(),
+               testLString.chars().filter(ch -> ch == 'o').count());
+         assertEquals("chars().map() is wrong",
+               testString.toUpperCase(),
+               testLString.chars().map(Character::toUpperCase)
+                     .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString());
+      }
+
+      @Test public void t37fSpliteratorSplits() {
+         int threshold = LString.getParallelThreshold();
+         LString.setParallelThreshold(0);
+         try {
+            LString testLString = new LString(testString, 4);
+            java.util.Spliterator.OfInt rest = testLString.charSpliterator();
+            java.util.Spliterator.OfInt prefix = rest.trySplit();
+            assertEquals("split is not at a node boundary", 0, prefix.getExactSizeIfKnown() % 4);
+            assertEquals("split sizes do not add up",
+                  testString.length(), prefix.getExactSizeIfKnown() + rest.getExactSizeIfKnown());
+            StringBuilder sb = new StringBuilder();
+            prefix.forEachRemaining((int ch) -> sb.append((char)ch));
+            rest.forEachRemaining((int ch) -> sb.append((char)ch));
+            assertEquals("split spliterators are wrong", testString, sb.toString());
+            assertEquals("parallel chars() is wrong", testString,
+                  testLString.chars().parallel()
+                        .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString());
+         } finally {
+            LString.setParallelThreshold(threshold);
+         }
+      }
+
+      @Test(expected=java.util.ConcurrentModificationException.class)
+      public void t37dCursorAfterReplace() {
+         LString testLString = new LString(testString, 4);
+         LString.Cursor cursor = testLString.cursor();
+         cursor.next();
+         testLString.replace(0, 1, new LString("x"));
+         cursor.next();
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringSubStringTestSpecial {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      private LString nullLString;
+
+      @Before public void setUp() {
+         nullLString = new LString();
+      }
+
+      @Test public void test41aSubStringEmpty() {
+         assertEquals("Substring of Empty LString is not Empty",
+               nullLString, nullLString.substring(0, 0));
+      }
+             
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test42aSubStringException() {
+         nullLString.substring(-1, 0);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test42bSubStringException() {
+         nullLString.substring(0, 1);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test42cSubStringException() {
+         nullLString.substring(1, 0);
+      }
+        
+      @Test public void test43aSubStringOneChar() {
+         LString testLString = new LString("a");
+         assertEquals("Substring of One Character LString is not Empty",
+               nullLString, testLString.substring(0, 0));
+      }
+      
+      @Test public void test43bSubStringOneChar() {
+         LString testLString = new LString("a");
+         assertEquals("Substring of One Character LString is not Empty",
+               nullLString, testLString.substring(1, 1));
+      }
+        
+      @Test public void test43cSubStringOneChar() {
+         LString testLString = new LString("a");
+         assertEquals("Substring of One Character LString is not equals LString",
+               testLString, testLString.substring(0, 1));
+      }
+        
+      @Test public void test43dSubStringOneCharIsNew() {
+         LString testLString = new LString("a");
+         LString result = testLString.substring(0, 1);
+         testLString.setCharAt(0, 'b');
+         assertEquals("Substring of One Character LString is not new LString",
+               "a", result.toString());
+      }
+        
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test44aSubStringException() {
+         LString testLString = new LString("a");
+         testLString.substring(-1, 0);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test44bSubStringException() {
+         LString testLString = new LString("a");
+         testLString.substring(0, 2);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test44cSubStringException() {
+         LString testLString = new LString("a");
+         testLString.substring(2, 1);
+      }
+   }
+   
+   @RunWith(Parameterized.class)
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringSubStringTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+      
+      @Parameters
+      public static Collection<Object[]> data() {
+         return Arrays.asList(new Object[][] {
+               {"ab"}, {"abc"}, {"A long string."}, {"This is an even longer string."}});
+      }
+      
+      static final char newChar = 'x'; // Some char not listed above.
+      
+      @Parameter public String testString;
+      
+      private LString testLString;
+      private LString nullLString;
+      
+      private int left, mid, right, length; // 0 < left <= mid <= right < length
+      
+      @Before public void setUp() {
+         nullLString = new LString();
+         testLString = new LString(testString);
+         length = testString.length(); // Length of testString
+         mid = length / 2; // midpoint of testString
+         left = 1 + mid / 2; // index between zero and mid
+         right = length - left; // index between mid and length
+      }
+
+      @Test public void test51aEmptySubstringAtStart() {
+         assertEquals("substring(0, 0) is not empty LString",
+            nullLString, testLString.substring(0, 0));
+      }
+      
+      @Test public void test51bEmptySubstringAtEnd() {
+         assertEquals("substring(length, length) is not empty LString",
+            nullLString, testLString.substring(testString.length(), testString.length()));
+      }
+      
+      @Test public void test51cEmptySubstringInMiddle() {
+         assertEquals("substring(mid, mid) is not empty LString",
+            nullLString, testLString.substring(mid, mid));
+      }
+      
+      @Test public void test51dSubstringAtStart() {
+         assertEquals("substring(0, mid) is not correct",
+            testString.substring(0, mid), testLString.substring(0, mid).toString());
+      }
+      
+      @Test public void test51eSubstringAtEnd() {
+         assertEquals("substring(mid, length) is not correct",
+            testString.substring(mid, length), testLString.substring(mid, length).toString());
+      }
+      
+      @Test public void test51fSubstringInMiddle() {
+         assertEquals("substring(left, right) is not correct",
+            testString.substring(left, right), testLString.substring(left, right).toString());
+      }
+      
+      @Test public void test51gSubstringAll() {
+         assertEquals("substring(0, length) is not correct",
+            testString.substring(0, length), testLString.substring(0, length).toString());
+      }
+      
+      @Test public void test51hSubstringAtStartIsNew() {
+         LString result = testLString.substring(0, mid);
+         testLString.setCharAt((left < mid) ? left : mid - 1, newChar);
+         assertEquals("substring(0, mid) is not new LString",
+               testString.substring(0, mid), result.toString());
+      }
+      
+      @Test public void test51jSubstringAtEndIsNew() {
+         LString result = testLString.substring(mid, length);
+         testLString.setCharAt((mid < right) ? (right - mid) : 1, newChar);
+         assertEquals("substring(mid, length) is not new LString",
+               testString.substring(mid, length), result.toString());
+      }
+      
+      @Test public void test51kSubstringInMiddleIsNew() {
+         if (left < right) {
+            LString result = testLString.substring(left, right);
+            testLString.setCharAt(mid - left, newChar);
+            assertEquals("substring(left, right) is not new LString",
+                  testString.substring(left, right), result.toString());
+         }
+      }
+      
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test52aSubStringException() {
+         testLString.substring(-1, 0);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test52bSubStringException() {
+         testLString.substring(0, testString.length() + 1);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test52cSubStringException() {
+         testLString.substring(mid + 1, mid);
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringReplaceTestSpecial {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+      
+      private String replaceString = "xyzzy";
+      
+      private LString replaceLString;
+      private LString nullLString;
+      
+      @Before public void setUp() {
+         replaceLString = new LString(replaceString);
+         nullLString = new LString();
+      }
+      
+      @Test public void test61aReplaceEmptyString() {
+         LString testLString = new LString();
+         LString newLString = testLString.replace(0, 0, replaceLString);
+         assertEquals("Replace of Empty LString is wrong",
+               replaceString, newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+      }
+      
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test62aReplaceOutOfBounds() {
+         nullLString.replace(-1, 0, replaceLString);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test62bReplaceOutOfBounds() {
+         nullLString.replace(0, 1, replaceLString);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test62cReplaceOutOfBounds() {
+         nullLString.replace(1, 0, replaceLString);
+      }
+        
+      @Test public void test63aReplaceOneChar() {
+         LString testLString = new LString("a");
+         LString newLString = testLString.replace(0, 0, replaceLString);
+         assertEquals("Replace of One Character LString is wrong",
+               replaceString + "a", newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+      }
+      
+      @Test public void test63bReplaceOneChar() {
+         LString testLString = new LString("a");
+         LString newLString = testLString.replace(1, 1, replaceLString);
+         assertEquals("Replace of One Character LString is wrong",
+               "a" + replaceString, newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+      }
+        
+      @Test public void test63cReplaceOneChar() {
+         LString testLString = new LString("a");
+         LString newLString = testLString.replace(0, 1, replaceLString);
+         assertEquals("Replace of One Character LString is wrong",
+               replaceString, newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+      }
+        
+      @Test public void test63dReplaceOneCharIsNew() {
+         LString testLString = new LString("a");
+         LString newLString = testLString.replace(0, 1, replaceLString);
+         newLString.setCharAt(2, '!');
+         assertEquals("Replace did not copy replacement LString",
+               replaceString, replaceLString.toString());
+      }
+        
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test64aReplaceOutOfBounds() {
+         LString testLString = new LString("a");
+         testLString.replace(-1, 0, replaceLString);
+      }
+        
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test64bReplaceOutOfBounds() {
+         LString testLString = new LString("a");
+         testLString.replace(0, 2, replaceLString);
+      }
+        
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test64cReplaceOutOfBounds() {
+         LString testLString = new LString("a");
+         testLString.replace(2, 1, replaceLString);
+      }
+
+      @Test public void test65aReplaceUsesOwnChunkSize() {
+         LString testLString = new LString("ab", 8);
+         testLString.replace(1, 1, new LString("0123456789abcdef", 1));
+         assertEquals("replace with small chunks is wrong",
+               "a0123456789abcdefb", testLString.toString());
+         assertEquals("replace did not copy into nodes of its own chunk size", 3, testLString.nodeCount);
+      }
+
+      @Test public void test65bReplaceKeepsNodesFull() {
+         String testString = "0123456789".repeat(40);
+         LString testLString = new LString(testString, 8);
+         StringBuilder expected = new StringBuilder(testString);
+         Random random = new Random(5);
+         for (int n = 0; n < 2000; n++) {
+            int start = random.nextInt(expected.length());
+            String insert = String.valueOf((char) ('a' + random.nextInt(26)));
+            testLString.replace(start, start + 1, new LString(insert));
+            expected.replace(start, start + 1, insert);
+         }
+         assertEquals("one char replaces are wrong", expected.toString(), testLString.toString());
+         assertEquals("one char replaces split up the nodes", testString.length() / 8, testLString.nodeCount);
+      }
+   }
+
+   @RunWith(Parameterized.class)
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringReplaceTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+      
+      @Parameters
+      public static Collection<Object[]> data() {
+         return Arrays.asList(new Object[][] {
+               {"abcd"}, {"Yet another even longer string."}});
+      }
+      
+      static final char newChar = '!'; // Some char not listed above.
+      
+      private String replaceString = "xyzzy";
+
+      @Parameter public String testString;
+      
+      private LString replaceLString;
+      private LString testLString;
+      private LString nullLString;
+      
+      private int left, mid, right, length; // 0 < left <= mid <= right < length
+      
+      @Before public void setUp() {
+         replaceLString = new LString(replaceString);
+         testLString = new LString(testString);
+         nullLString = new LString();
+         length = testString.length(); // Length of testString
+         mid = length / 2; // midpoint of testString
+         left = 1 + mid / 2; // index between zero and mid
+         right = length - left; // index between mid and length
+      }
+
+      @Test public void test71aReplacePrepend() {
+         LString newLString = testLString.replace(0, 0, replaceLString);
+         assertEquals("replace(0, 0) is wrong",
+            replaceString + testString, newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+         newLString.setCharAt(2, newChar);
+         assertEquals("replace did not copy replacement LString",
+            replaceString, replaceLString.toString());
+      }
+      
+      @Test public void test71bReplaceAppend() {
+         LString newLString = testLString.replace(length, length, replaceLString);
+         assertEquals("replace(length, length) is wrong",
+            testString + replaceString, newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+         newLString.setCharAt(length + 2, newChar);
+         assertEquals("replace did not copy replacement LString",
+            replaceString, replaceLString.toString());
+      }
+      
+      @Test public void test71cReplaceInMiddle() {
+         LString newLString = testLString.replace(mid, mid, replaceLString);
+         assertEquals("replace(mid, mid) is wrong",
+            testString.substring(0, mid) + replaceString + testString.substring(mid, length), newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+         newLString.setCharAt(mid + 2, newChar);
+         assertEquals("replace did not copy replacement LString",
+            replaceString, replaceLString.toString());
+      }
+      
+      @Test public void test71dReplaceAtStart() {
+         LString newLString = testLString.replace(0, mid, replaceLString);
+         assertEquals("replace(0, mid) is wrong",
+            replaceString + testString.substring(mid, length), newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+         newLString.setCharAt(2, newChar);
+         assertEquals("replace did not copy replacement LString",
+            replaceString, replaceLString.toString());
+      }
+      
+      @Test public void test71eReplaceAtEnd() {
+         LString newLString = testLString.replace(mid, length, replaceLString);
+         assertEquals("replace(mid, length) is wrong",
+             testString.substring(0, mid) + replaceString, newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+         newLString.setCharAt(mid + 2, newChar);
+         assertEquals("replace did not copy replacement LString",
+            replaceString, replaceLString.toString());
+      }
+      
+      @Test public void test71fReplaceInMiddle() {
+         LString newLString = testLString.replace(left, right, replaceLString);
+         assertEquals("replace(left, right) is wrong",
+             testString.substring(0, left) + replaceString + testString.substring(right, length), newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+         newLString.setCharAt(left + 2, newChar);
+         assertEquals("replace did not copy replacement LString",
+            replaceString, replaceLString.toString());
+      }
+      
+      @Test public void test71gReplaceAll() {
+         LString newLString = testLString.replace(0, length, replaceLString);
+         assertEquals("replace(0, length) is wrong",
+             replaceString, newLString.toString());
+         assertSame("replace returned different LString", testLString, newLString);
+         newLString.setCharAt(2, newChar);
+         assertEquals("replace did not copy replacement LString",
+            replaceString, replaceLString.toString());
+      }
+      
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test72aReplaceException() {
+         testLString.replace(-1, 0, replaceLString);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test72bReplaceException() {
+         testLString.replace(0, testString.length() + 1, replaceLString);
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test72cReplaceException() {
+         testLString.replace(mid + 1, mid, replaceLString);
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringNodePoolTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      private String testString = "Nodes dropped by replace get used again.";
+
+      @Test public void test73aReplaceReusesNodes() {
+         LString.NodePool pool = new LString.NodePool(16);
+         LString testLString = new LString(testString, 4);
+         testLString.setNodePool(pool);
+         LString replaceLString = new LString("0123456789ab", 4);
+         testLString.replace(0, 12, replaceLString);
+         assertEquals("replace with pool is wrong",
+               "0123456789ab" + testString.substring(12), testLString.toString());
+         assertEquals("replace did not reuse the dropped nodes", 3, pool.hits());
+         testLString.setCharAt(0, '!');
+         assertEquals("replace did not copy replacement LString",
+               "0123456789ab", replaceLString.toString());
+      }
+
+      @Test public void test73bPoolIsBounded() {
+         LString.NodePool pool = new LString.NodePool(2);
+         LString testLString = new LString(testString, 4);
+         testLString.setNodePool(pool);
+         testLString.replace(0, testString.length(), new LString());
+         assertEquals("pool holds more nodes than its bound", 2, pool.size());
+         assertEquals("replace of everything is wrong", "", testLString.toString());
+         LString result = testLString.replace(0, 0, new LString("abcdefghij", 4));
+         assertEquals("replace into empty LString is wrong", "abcdefghij", result.toString());
+         assertEquals("pool hits are wrong", 2, pool.hits());
+         assertEquals("pool misses are wrong", 1, pool.misses());
+      }
+
+      @Test public void test73cPooledNodesGoBackToLatin1() {
+         LString.NodePool pool = new LString.NodePool(16);
+         LString testLString = new LString("abcdefgh", 4);
+         testLString.setNodePool(pool);
+         testLString.setCharAt(0, '\u20ac');
+         testLString.replace(0, 4, new LString());
+         testLString.replace(0, 0, new LString("plain"));
+         assertEquals("replace with widened pooled node is wrong", "plainefgh", testLString.toString());
+         assertEquals("replace did not reuse the widened node", 1, pool.hits());
+         assertEquals("pooled node stayed UTF-16", 0, testLString.wideNodes());
+      }
+
+      @Test public void test73dPoolKeepsCapacitiesApart() {
+         LString.NodePool pool = new LString.NodePool(16);
+         LString small = new LString("abcdefgh", 4);
+         LString large = new LString("abcdefgh", 8);
+         small.setNodePool(pool);
+         large.setNodePool(pool);
+         small.replace(0, 8, new LString());
+         large.replace(0, 8, new LString());
+         small.replace(0, 0, new LString("01234567"));
+         assertEquals("replace from shared pool is wrong", "01234567", small.toString());
+         assertEquals("pool hits are wrong", 2, pool.hits());
+         assertEquals("pool misses are wrong", 0, pool.misses());
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringBatchTest {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      private String testString = "Batch edits in one walk.";
+
+      @Test public void test74aAppendMany() {
+         LString testLString = new LString(testString, 4);
+         LString result = testLString.append(new LString("abc"), testLString, new LString(), new LString("xyzzy"));
+         assertSame("append returned different LString", testLString, result);
+         assertEquals("append(LString...) is wrong",
+               testString + "abc" + testString + "xyzzy", result.toString());
+         assertEquals("length() after append is wrong",
+               2 * testString.length() + 8, result.length());
+      }
+
+      @Test public void test74bInsertAll() {
+         LString testLString = new LString(testString, 4);
+         int length = testString.length();
+         LString result = testLString.insertAll(new int[] {length, 6, 0, 6, 3},
+               new LString("[end]"), new LString("<"), new LString("[start]"), new LString(">"), new LString("|"));
+         assertSame("insertAll returned different LString", testLString, result);
+         assertEquals("insertAll is wrong",
+               "[start]" + testString.substring(0, 3) + "|" + testString.substring(3, 6) + "<>"
+                     + testString.substring(6) + "[end]", result.toString());
+      }
+
+      @Test public void test74cAppendAfterEdits() {
+         LString testLString = new LString(testString, 4);
+         testLString.replace(2, testString.length(), new LString("ab"));
+         testLString.replace(testLString.length(), testLString.length(), new LString("cd"));
+         testLString.append(new LString("ef"));
+         assertEquals("append after replace is wrong",
+               testString.substring(0, 2) + "abcdef", testLString.toString());
+      }
+
+      @Test(expected=IndexOutOfBoundsException.class)
+      public void test74dInsertAllOutOfBounds() {
+         new LString("a").insertAll(new int[] {2}, new LString("b"));
+      }
+
+      @Test public void test74eReplaceAppendFillsTail() {
+         LString replaced = new LString(testString, 8);
+         LString appended = new LString(testString, 8);
+         LString oneChar = new LString("x");
+         for (int n = 0; n < 2000; n++) {
+            replaced.replace(replaced.length(), replaced.length(), oneChar);
+            appended.append(oneChar);
+         }
+         assertEquals("appending through replace is wrong", appended.toString(), replaced.toString());
+         assertEquals("appending through replace did not fill the tail node",
+               appended.nodeCount, replaced.nodeCount);
+      }
+
+      @Test public void test74fInsertAllKeepsNodesFull() {
+         String longString = "0123456789".repeat(40);
+         Random random = new Random(9);
+         int[] indices = new int[1000];
+         LString[] inserts = new LString[indices.length];
+         for (int i = 0; i < indices.length; i++) {
+            indices[i] = random.nextInt(longString.length() + 1);
+            inserts[i] = new LString(String.valueOf((char) ('a' + i % 26)), 1);
+         }
+         LString inserted = new LString(longString, 8);
+         inserted.insertAll(indices, inserts);
+         //the same insertions one at a time, from the highest index down
+         LString replaced = new LString(longString, 8);
+         Integer[] order = new Integer[indices.length];
+         for (int i = 0; i < order.length; i++)
+            order[i] = i;
+         Arrays.sort(order, (a, b) -> indices[b] != indices[a] ? indices[b] - indices[a] : b - a);
+         for (int i : order)
+            replaced.replace(indices[i], indices[i], inserts[i]);
+         assertEquals("insertAll of many one char LStrings is wrong", replaced.toString(), inserted.toString());
+         assertTrue("insertAll split up the nodes: " + inserted.nodeCount + " nodes",
+               inserted.nodeCount <= replaced.nodeCount);
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringReplaceAllTest {
+      // Maximum 1 second for all tests
+      @Rule public Timeout timeout = new Timeout(1000);
+
+      private String testString = "Alice told Bob the password, and Bob told Carol.";
+
+      @Test public void test75aReplaceAllMap() {
+         LString testLString = new LString(testString, 4);
+         Map<LString, LString> replacements = new LinkedHashMap<>();
+         replacements.put(new LString("Alice"), new LString("[A]"));
+         replacements.put(new LString("Bob"), new LString("[B]"));
+         replacements.put(new LString("password"), new LString());
+         LString result = testLString.replaceAll(replacements);
+         assertSame("replaceAll returned different LString", testLString, result);
+         assertEquals("replaceAll is wrong",
+               "[A] told [B] the , and [B] told Carol.", result.toString());
+         assertEquals("length() after replaceAll is wrong",
+               "[A] told [B] the , and [B] told Carol.".length(), result.length());
+         assertEquals("hashCode() after replaceAll is wrong",
+               "[A] told [B] the , and [B] told Carol.".hashCode(), result.hashCode());
+      }
+
+      @Test public void test75bReplaceAllLongestFirst() {
+         LString testLString = new LString(testString, 3);
+         LStringMatcher matcher = new LStringMatcher(new LString("Bo"), new LString("Bob told"), new LString("o"));
+         testLString.replaceAll(matcher, new LString("1"), new LString("2"), new LString("0"));
+         assertEquals("replaceAll with overlapping patterns is wrong",
+               "Alice t0ld 1b the passw0rd, and 2 Car0l.", testLString.toString());
+      }
+
+      @Test public void test75cReplaceAllWithItself() {
+         LString testLString = new LString("a-b-a", 2);
+         Map<LString, LString> replacements = new LinkedHashMap<>();
+         replacements.put(new LString("b"), testLString);
+         testLString.replaceAll(replacements);
+         assertEquals("replaceAll with itself is wrong", "a-a-b-a-a", testLString.toString());
+         assertSame("replaceAll without matches returned different LString",
+               testLString, testLString.replaceAll(replacements));
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringSearchTest {
+      // Maximum 1 second for all tests
+      @Rule public Timeout timeout = new Timeout(1000);
+
+      private String testString = "she sells sea shells by the sea shore, \u4e2d sea shells";
+
+      private void checkIndexOf(String pattern, int chunkSize) {
+         LString testLString = new LString(testString, chunkSize);
+         LString lPattern = new LString(pattern);
+         assertEquals("indexOf(\"" + pattern + "\") is wrong",
+               testString.indexOf(pattern), testLString.indexOf(lPattern));
+         assertEquals("lastIndexOf(\"" + pattern + "\") is wrong",
+               testString.lastIndexOf(pattern), testLString.lastIndexOf(lPattern));
+         for (int from = -1; from <= testString.length() + 1; from += 3) {
+            assertEquals("indexOf(\"" + pattern + "\", " + from + ") is wrong",
+                  testString.indexOf(pattern, from), testLString.indexOf(lPattern, from));
+            assertEquals("lastIndexOf(\"" + pattern + "\", " + from + ") is wrong",
+                  testString.lastIndexOf(pattern, from), testLString.lastIndexOf(lPattern, from));
+         }
+      }
+
+      @Test public void test84aShortPatterns() {
+         for (String pattern : new String[] {"s", "se", "sea", "\u4e2d", "x", ""})
+            checkIndexOf(pattern, 3);
+      }
+
+      @Test public void test84bLongPatterns() {
+         for (String pattern : new String[] {"sea shells", "shore, \u4e2d", "she sells", "sea shellz", testString})
+            checkIndexOf(pattern, 4);
+      }
+
+      @Test public void test84cContains() {
+         LString testLString = new LString(testString, 5);
+         assertTrue("contains is wrong", testLString.contains(new LString("the sea")));
+         assertFalse("contains is wrong", testLString.contains(new LString("the seas")));
+         assertTrue("contains itself is wrong", testLString.contains(testLString));
+      }
+
+      @Test public void test84dFindAll() {
+         LString testLString = new LString(testString, 5);
+         assertArrayEquals("findAll is wrong",
+               new int[] {0, 4, 8, 10, 14, 19, 28, 32, 41, 45, 50}, testLString.findAll(new LString("s")));
+         assertArrayEquals("findAll is wrong",
+               new int[] {14, 45}, testLString.findAll(new LString("shells")));
+         assertArrayEquals("findAll of overlapping matches is wrong",
+               new int[] {0, 2}, new LString("aaaaa").findAll(new LString("aa")));
+         assertArrayEquals("findAll of empty pattern is wrong",
+               new int[] {0, 1, 2}, new LString("ab").findAll(new LString()));
+      }
+
+      @Test public void test84eFindAllThenReplace() {
+         LString testLString = new LString(testString, 5);
+         LString pattern = new LString("sea");
+         int[] found = testLString.findAll(pattern);
+         for (int i = found.length - 1; i >= 0; i--)
+            testLString.replace(found[i], found[i] + pattern.length(), new LString("ocean"));
+         assertEquals("replace at findAll positions is wrong",
+               testString.replace("sea", "ocean"), testLString.toString());
+      }
+
+      @Test public void test84fSearchBetweenReplaces() {
+         for (boolean indexed : new boolean[] {false, true}) {
+            LString testLString = new LString(testString, 4);
+            testLString.setIndexed(indexed);
+            StringBuilder expected = new StringBuilder(testString);
+            for (int n = 0; n < 20; n++) {
+               assertEquals("indexOf between replaces is wrong",
+                     expected.indexOf("shells"), testLString.indexOf(new LString("shells")));
+               assertEquals("chars() between replaces is wrong",
+                     expected.chars().sum(), testLString.chars().sum());
+               testLString.replace(0, 0, new LString("ab"));
+               testLString.replace(n, n + 1, new LString());
+               expected.insert(0, "ab").deleteCharAt(n);
+            }
+            assertEquals("replaces between searches are wrong", expected.toString(), testLString.toString());
+         }
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringSpecialTest {
+      // Maximum 1 second for special tests
+      @Rule public Timeout timeout = new Timeout(1000);
+
+      @Rule public TemporaryFolder folder = new TemporaryFolder();
+      
+      /* String with all legal single char code points. */
+      private String allCharsString;
+      
+      @Before public void setUp() {
+         StringBuilder sb = new StringBuilder(((int)Character.MAX_VALUE) + 10);
+         sb.append("}>");
+         for (char ch = Character.MIN_VALUE; ch < Character.MIN_SURROGATE; ch++)
+            sb.append(ch);
+         sb.append("<{");
+         allCharsString = sb.toString();
+      }
+      
+      @Test public void test81aAllChars() {
+         LString testLString = new LString(allCharsString);
+         assertEquals("Problem with representing all chars",
+               allCharsString, testLString.toString());
+      }
+      
+      @Test public void test81bAllCharsLength() {
+         LString testLString = new LString(allCharsString);
+         assertEquals("Problem with representing all chars",
+               allCharsString.length(), testLString.length());
+      }
+      
+      @Test public void test81cAllCharReplace() {
+         LString testLString = new LString(allCharsString);
+         LString testLString2 = new LString(allCharsString);
+         int length = allCharsString.length();
+         assertEquals("Problem with representing all chars",
+               allCharsString + allCharsString,
+               testLString.replace(length, length, testLString2).toString());
+      }
+
+      @Test public void test81dAllCharsSaveLoad() throws IOException {
+         Path file = folder.newFile().toPath();
+         new LString(allCharsString).save(file);
+         LString loaded = LString.load(file);
+         assertEquals("Problem with saving and loading all chars",
+               allCharsString, loaded.toString());
+         assertEquals("Problem with saving and loading all chars",
+               allCharsString.length(), loaded.length());
+         assertEquals("Problem with hashCode of loaded chars",
+               allCharsString.hashCode(), loaded.hashCode());
+      }
+
+      @Test public void test81eSaveLoadKeepsChunks() throws IOException {
+         LString testLString = new LString(allCharsString.substring(0, 500), 16);
+         testLString.replace(3, 40, new LString("\u4e2d"));
+         testLString.replace(100, 100, new LString("xyzzy", 3));
+         Path file = folder.newFile().toPath();
+         testLString.save(file);
+         LString loaded = LString.load(file);
+         assertEquals("Problem with saving and loading edited chunks", testLString, loaded);
+         assertEquals("Loaded LString has a different chunk size", 16, loaded.chunkSize);
+         assertEquals("Loaded LString has different nodes", testLString.nodeCount, loaded.nodeCount);
+         loaded.replace(loaded.length(), loaded.length(), new LString("end"));
+         assertEquals("Problem with appending to a loaded LString",
+               testLString.toString() + "end", loaded.toString());
+         new LString().save(file);
+         assertEquals("Problem with saving and loading an empty LString", "", LString.load(file).toString());
+      }
+
+      @Test(expected=IOException.class)
+      public void test81fLoadNotSaved() throws IOException {
+         Path file = folder.newFile().toPath();
+         Files.write(file, allCharsString.substring(0, 100).getBytes(StandardCharsets.UTF_8));
+         LString.load(file);
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringLatin1Test {
+      // Maximum 10 milliseconds for all tests
+      @Rule public Timeout timeout = new Timeout(100);
+
+      private String latin1String = "Caf\u00e9 cr\u00e8me, spread over a few Latin-1 chunks.";
+
+      @Test public void test82aSetCharAtWidens() {
+         LString testLString = new LString(latin1String, 8);
+         testLString.setCharAt(9, '\u20ac');
+         String expected = latin1String.substring(0, 9) + '\u20ac' + latin1String.substring(10);
+         assertEquals("setCharAt of a wide char is wrong", expected, testLString.toString());
+         for (int i = 0; i < expected.length(); i++)
+            assertEquals("charAt(" + i + ") after widening is wrong",
+                  expected.charAt(i), testLString.charAt(i));
+         assertEquals("hashCode() after widening is wrong",
+               expected.hashCode(), testLString.hashCode());
+      }
+
+      @Test public void test82bReplaceWidens() {
+         LString testLString = new LString(latin1String, 8);
+         String wide = "\u0416\u00ff\u4e2d";
+         testLString.replace(3, 20, new LString(wide));
+         String expected = latin1String.substring(0, 3) + wide + latin1String.substring(20);
+         assertEquals("replace with wide chars is wrong", expected, testLString.toString());
+         assertEquals("substring across widened chunks is wrong",
+               expected.substring(2, 9), testLString.substring(2, 9).toString());
+      }
+
+      @Test public void test82cCompareMixedChunks() {
+         LString latin1 = new LString(latin1String, 8);
+         LString widened = new LString(latin1String, 5);
+         widened.setCharAt(1, '\u0100');
+         widened.setCharAt(1, latin1String.charAt(1));
+         assertEquals("Latin-1 and UTF-16 chunks with the same chars are not equal",
+               latin1, widened);
+         widened.setCharAt(latin1String.length() - 1, '\u0100');
+         assertTrue("compareTo across Latin-1 and UTF-16 chunks is wrong",
+               latin1.compareTo(widened) < 0);
+      }
+   }
+
+   @FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+   public static class LStringParallelTest {
+      // Maximum 1 second for all tests
+      @Rule public Timeout timeout = new Timeout(1000);
+
+      private String longString;
+      private int threshold;
+
+      @Before public void setUp() {
+         StringBuilder sb = new StringBuilder();
+         for (int i = 0; sb.length() < 200000; i++)
+            sb.append((char)('a' + i % 26)).append(i);
+         sb.append('\u20ac');
+         longString = sb.toString();
+         threshold = LString.getParallelThreshold();
+         LString.setParallelThreshold(1000);
+      }
+
+      @After public void tearDown() {
+         LString.setParallelThreshold(threshold);
+      }
+
+      @Test public void test83aParallelEquals() {
+         LString testLString = new LString(longString);
+         assertTrue("parallelEquals of equal LStrings is wrong",
+               testLString.parallelEquals(new LString(longString, 7)));
+         LString differs = new LString(longString);
+         differs.setCharAt(longString.length() - 3, '!');
+         assertFalse("parallelEquals missed a difference near the end",
+               testLString.parallelEquals(differs));
+         differs = new LString(longString);
+         differs.setCharAt(100, '\u0100');
+         assertFalse("parallelEquals missed a difference in a widened chunk",
+               testLString.parallelEquals(differs));
+         assertFalse("parallelEquals of different lengths is wrong",
+               testLString.parallelEquals(new LString(longString.substring(1))));
+      }
+
+      @Test public void test83bParallelHash() {
+         LString testLString = new LString(longString, 50);
+         assertEquals("parallelHash() is wrong", longString.hashCode(), testLString.parallelHash());
+         testLString.replace(10, 20, new LString("xyzzy"));
+         String expected = longString.substring(0, 10) + "xyzzy" + longString.substring(20);
+         assertEquals("parallelHash() after replace is wrong", expected.hashCode(), testLString.parallelHash());
+      }
+
+      @Test public void test83cParallelChars() {
+         LString testLString = new LString(longString, 50);
+         testLString.replace(5, 5, new LString("\u0416"));
+         String expected = longString.substring(0, 5) + "\u0416" + longString.substring(5);
+         assertEquals("parallel count is wrong",
+               expected.chars().filter(Character::isDigit).count(),
+               testLString.chars().parallel().filter(Character::isDigit).count());
+         assertEquals("parallel sum is wrong",
+               expected.chars().asLongStream().sum(), testLString.chars().parallel().asLongStream().sum());
+         assertArrayEquals("parallel toArray is wrong",
+               expected.chars().toArray(), testLString.chars().parallel().toArray());
+      }
+
+      @Test(expected=java.util.ConcurrentModificationException.class)
+      public void test83dCharsAfterReplace() {
+         LString testLString = new LString(longString);
+         java.util.PrimitiveIterator.OfInt chars = testLString.chars().iterator();
+         chars.nextInt();
+         testLString.replace(0, 1, new LString("xy"));
+         chars.nextInt();
+      }
+
+      @Test public void test83eParallelEmpty() {
+         LString.setParallelThreshold(0);
+         LString testLString = new LString();
+         assertTrue("parallelEquals of empty LStrings is wrong",
+               testLString.parallelEquals(new LString()));
+         assertEquals("parallelHash() of empty LString is wrong", 0, testLString.parallelHash());
+         assertEquals("parallel count of empty LString is wrong",
+               0, testLString.chars().parallel().count());
+      }
+
+      @Test public void test83fParallelFromManyThreads() throws InterruptedException {
+         LString testLString = new LString(longString, 50);
+         LString sameLString = new LString(longString, 7);
+         java.util.concurrent.atomic.AtomicInteger wrong = new java.util.concurrent.atomic.AtomicInteger();
+         Thread[] threads = new Thread[4];
+         for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+               for (int n = 0; n < 5; n++) {
+                  if (!testLString.parallelEquals(sameLString) || !sameLString.parallelEquals(testLString))
+                     wrong.incrementAndGet();
+                  if (testLString.parallelHash() != longString.hashCode())
+                     wrong.incrementAndGet();
+               }
+            });
+            threads[t].start();
+         }
+         for (Thread thread : threads)
+            thread.join();
+         assertEquals("parallelEquals or parallelHash from several threads is wrong", 0, wrong.get());
+      }
+   }
+}
@@ -0,0 +1,109 @@
+package lstring;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class MappedLStringTest {
+   // Maximum 1 second for all tests
+   @Rule public Timeout timeout = new Timeout(1000);
+
+   @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+   private String testString = "Lazily mapped \u00e9t\u00e9 text \u4e2d\ud83d\ude00 chunk by chunk. ";
+
+   private String longString;
+
+   @Before public void setUp() {
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < 5 * MappedLString.CHUNK_CHARS)
+         sb.append(testString);
+      longString = sb.toString();
+   }
+
+   private MappedLString open(String text, Charset charset) throws IOException {
+      Path file = folder.newFile().toPath();
+      Files.write(file, text.getBytes(charset));
+      return MappedLString.open(file, charset);
+   }
+
+   @Test public void test01aUtf8() throws IOException {
+      MappedLString testLString = open(longString, StandardCharsets.UTF_8);
+      assertEquals("length() is wrong", longString.length(), testLString.length());
+      for (int i = 0; i < longString.length(); i += 101)
+         assertEquals("charAt(" + i + ") is wrong", longString.charAt(i), testLString.charAt(i));
+      assertEquals("toString() is wrong", longString, testLString.toString());
+   }
+
+   @Test public void test01bUtf16PairAcrossChunks() throws IOException {
+      // puts a surrogate pair across the first chunk boundary
+      String text = longString.substring(0, MappedLString.CHUNK_CHARS - 1) + "\ud83d\ude00" + longString;
+      MappedLString testLString = open(text, StandardCharsets.UTF_16LE);
+      assertEquals("UTF-16LE text is wrong", text, testLString.toString());
+   }
+
+   @Test public void test01cByteOrderMarkAcrossChunks() throws IOException {
+      // little-endian with a byte order mark, which UTF-16 and UTF-32 drop
+      byte[] utf16 = longString.getBytes(StandardCharsets.UTF_16LE);
+      byte[] utf32 = longString.getBytes(Charset.forName("UTF-32LE"));
+      byte[] bytes16 = new byte[utf16.length + 2];
+      byte[] bytes32 = new byte[utf32.length + 4];
+      bytes16[0] = bytes32[0] = (byte) 0xff;
+      bytes16[1] = bytes32[1] = (byte) 0xfe;
+      System.arraycopy(utf16, 0, bytes16, 2, utf16.length);
+      System.arraycopy(utf32, 0, bytes32, 4, utf32.length);
+      Path file16 = folder.newFile().toPath();
+      Path file32 = folder.newFile().toPath();
+      Files.write(file16, bytes16);
+      Files.write(file32, bytes32);
+      assertEquals("UTF-16 text is wrong", longString,
+            MappedLString.open(file16, StandardCharsets.UTF_16).toString());
+      assertEquals("UTF-32 text is wrong", longString,
+            MappedLString.open(file32, Charset.forName("UTF-32")).toString());
+   }
+
+   @Test public void test01dStatefulAcrossChunks() throws IOException {
+      // ISO-2022-JP shifts into JIS X 0208 once and stays there across chunks
+      StringBuilder sb = new StringBuilder("x");
+      while (sb.length() < 3 * MappedLString.CHUNK_CHARS)
+         sb.append("\u65e5\u672c\u8a9e");
+      String text = sb.toString();
+      MappedLString testLString = open(text, Charset.forName("ISO-2022-JP"));
+      assertEquals("ISO-2022-JP text is wrong", text, testLString.toString());
+      int index = 2 * MappedLString.CHUNK_CHARS + 1;
+      assertEquals("charAt is wrong", text.charAt(index), testLString.charAt(index));
+   }
+
+   @Test public void test02aOnlyTouchedChunksDecoded() throws IOException {
+      String text = longString.replaceAll("[^a-z ]", "x");
+      MappedLString testLString = open(text, StandardCharsets.ISO_8859_1);
+      assertEquals("chunks decoded on open", 0, testLString.decodedChunks());
+      int index = 3 * MappedLString.CHUNK_CHARS + 5;
+      assertEquals("charAt is wrong", text.charAt(index), testLString.charAt(index));
+      assertEquals("charAt decoded more than its chunk", 1, testLString.decodedChunks());
+      LString sub = testLString.substring(MappedLString.CHUNK_CHARS - 10, MappedLString.CHUNK_CHARS + 10);
+      assertEquals("substring is wrong",
+            text.substring(MappedLString.CHUNK_CHARS - 10, MappedLString.CHUNK_CHARS + 10), sub.toString());
+      assertEquals("substring decoded more than its chunks", 3, testLString.decodedChunks());
+   }
+
+   @Test public void test03aEmptyFile() throws IOException {
+      MappedLString testLString = open("", StandardCharsets.UTF_8);
+      assertEquals("empty file has chars", 0, testLString.length());
+      assertEquals("empty file substring is wrong", "", testLString.substring(0, 0).toString());
+   }
+
+   @Test(expected=IndexOutOfBoundsException.class)
+   public void test04aCharAtOutOfBounds() throws IOException {
+      open(testString, StandardCharsets.UTF_8).charAt(testString.length());
+   }
+}
@@ -0,0 +1,80 @@
+package lstring;
+
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class OffHeapLStringTest {
+   // Maximum 1 second for all tests
+   @Rule public Timeout timeout = new Timeout(1000);
+
+   private String testString = "Off-heap chars spread over several slots.";
+
+   @Test public void test01aOfString() {
+      try (OffHeapLString testLString = new OffHeapLString(testString, 4)) {
+         assertEquals("toString() is wrong", testString, testLString.toString());
+         assertEquals("length() is wrong", testString.length(), testLString.length());
+         for (int i = 0; i < testString.length(); i++)
+            assertEquals("charAt(" + i + ") is wrong", testString.charAt(i), testLString.charAt(i));
+         assertEquals("hashCode() is wrong", testString.hashCode(), testLString.hashCode());
+      }
+   }
+
+   @Test public void test02aSubstringIsNew() {
+      try (OffHeapLString testLString = new OffHeapLString(testString, 4);
+           OffHeapLString result = testLString.substring(3, 20)) {
+         testLString.setCharAt(5, '!');
+         assertEquals("substring is not new OffHeapLString",
+               testString.substring(3, 20), result.toString());
+      }
+   }
+
+   @Test public void test03aReplaceSelf() {
+      try (OffHeapLString testLString = new OffHeapLString(testString, 4)) {
+         testLString.replace(4, 4, testLString);
+         assertEquals("replace with itself is wrong",
+               testString.substring(0, 4) + testString + testString.substring(4),
+               testLString.toString());
+      }
+   }
+
+   @Test public void test04aCompareTo() {
+      try (OffHeapLString b = new OffHeapLString("B"); OffHeapLString bb = new OffHeapLString("BB");
+           OffHeapLString ba = new OffHeapLString("Ba"); OffHeapLString a = new OffHeapLString("a")) {
+         assertTrue(b.compareTo(bb) < 0);
+         assertTrue(bb.compareTo(ba) < 0);
+         assertTrue(ba.compareTo(a) < 0);
+         assertEquals(new OffHeapLString("Ba", 1), ba);
+      }
+   }
+
+   @Test(expected=IllegalStateException.class)
+   public void test05aClosed() {
+      OffHeapLString testLString = new OffHeapLString(testString);
+      testLString.close();
+      testLString.charAt(0);
+   }
+
+   @Test public void test06aRandomSplices() {
+      Random random = new Random(7);
+      StringBuilder expected = new StringBuilder(testString);
+      try (OffHeapLString testLString = new OffHeapLString(testString, 5)) {
+         for (int n = 0; n < 2000; n++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(Math.min(20, expected.length() - start) + 1);
+            String insert = testString.substring(random.nextInt(testString.length()));
+            if (expected.length() > 200)
+               insert = "";
+            expected.replace(start, end, insert);
+            try (OffHeapLString replacement = new OffHeapLString(insert, 3)) {
+               testLString.replace(start, end, replacement);
+            }
+         }
+         assertEquals("random splices are wrong", expected.toString(), testLString.toString());
+      }
+   }
+}
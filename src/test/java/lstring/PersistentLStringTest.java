@@ -0,0 +1,89 @@
+package lstring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class PersistentLStringTest {
+   // Maximum 1 second for all tests
+   @Rule public Timeout timeout = new Timeout(1000);
+
+   private String testString = "Every version of this string stays as it was. ";
+
+   private String longString;
+
+   @Before public void setUp() {
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < 4 * Rope.LEAF_SIZE)
+         sb.append(testString);
+      longString = sb.toString();
+   }
+
+   @Test public void test01aOfString() {
+      PersistentLString testLString = new PersistentLString(longString);
+      assertEquals("toString() is wrong", longString, testLString.toString());
+      assertEquals("length() is wrong", longString.length(), testLString.length());
+      for (int i = 0; i < longString.length(); i += 97)
+         assertEquals("charAt(" + i + ") is wrong", longString.charAt(i), testLString.charAt(i));
+      assertEquals("hashCode() is wrong", longString.hashCode(), testLString.hashCode());
+      assertEquals("of(LString) is wrong", testLString, PersistentLString.of(new LString(longString)));
+      assertEquals("EMPTY is not empty", "", PersistentLString.EMPTY.toString());
+   }
+
+   @Test public void test02aEditsLeaveOldVersions() {
+      PersistentLString original = new PersistentLString(longString);
+      PersistentLString changed = original.withCharAt(3, '!');
+      PersistentLString replaced = changed.withReplace(10, 20, new PersistentLString("xyzzy"));
+      PersistentLString sub = replaced.sub(5, 30);
+      assertEquals("withCharAt changed original", longString, original.toString());
+      assertEquals("withCharAt is wrong",
+            longString.substring(0, 3) + "!" + longString.substring(4), changed.toString());
+      String expected = longString.substring(0, 3) + "!" + longString.substring(4, 10) + "xyzzy" + longString.substring(20);
+      assertEquals("withReplace is wrong", expected, replaced.toString());
+      assertEquals("sub is wrong", expected.substring(5, 30), sub.toString());
+      assertSame("sub of everything is not the same version", replaced, replaced.sub(0, replaced.length()));
+   }
+
+   @Test public void test03aCompareToAndEquals() {
+      assertTrue(new PersistentLString("B").compareTo(new PersistentLString("BB")) < 0);
+      assertTrue(new PersistentLString("BB").compareTo(new PersistentLString("Ba")) < 0);
+      assertTrue(new PersistentLString("Ba").compareTo(new PersistentLString("a")) < 0);
+      assertEquals(new PersistentLString(longString), new PersistentLString(longString));
+      assertNotEquals(new PersistentLString(longString), new PersistentLString(longString).withCharAt(1000, '#'));
+   }
+
+   @Test(expected=IndexOutOfBoundsException.class)
+   public void test04aWithReplaceOutOfBounds() {
+      new PersistentLString("a").withReplace(0, 2, new PersistentLString("b"));
+   }
+
+   @Test public void test05aRandomVersions() {
+      Random random = new Random(16);
+      List<String> expected = new ArrayList<>();
+      List<PersistentLString> versions = new ArrayList<>();
+      StringBuilder sb = new StringBuilder(longString);
+      PersistentLString current = new PersistentLString(longString);
+      for (int n = 0; n < 1000; n++) {
+         int start = random.nextInt(sb.length() + 1);
+         int end = start + random.nextInt(Math.min(50, sb.length() - start) + 1);
+         String insert = testString.substring(random.nextInt(testString.length()));
+         sb.replace(start, end, insert);
+         current = current.withReplace(start, end, new PersistentLString(insert));
+         if (sb.length() > 0) {
+            int index = random.nextInt(sb.length());
+            sb.setCharAt(index, (char)('a' + n % 26));
+            current = current.withCharAt(index, (char)('a' + n % 26));
+         }
+         expected.add(sb.toString());
+         versions.add(current);
+      }
+      for (int n = 0; n < versions.size(); n += 50)
+         assertEquals("version " + n + " is wrong", expected.get(n), versions.get(n).toString());
+   }
+}
@@ -0,0 +1,94 @@
+package lstring;
+
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class RopeLStringTest {
+   // Maximum 1 second for all tests
+   @Rule public Timeout timeout = new Timeout(1000);
+
+   private String testString = "This is a rope long enough to need more than one leaf. ";
+
+   private String longString;
+
+   @Before public void setUp() {
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < 4 * Rope.LEAF_SIZE)
+         sb.append(testString);
+      longString = sb.toString();
+   }
+
+   @Test public void test01aEmpty() {
+      assertEquals("RopeLString() is not empty", "", new RopeLString().toString());
+      assertEquals("RopeLString() length is not zero", 0, new RopeLString().length());
+   }
+
+   @Test public void test01bOfString() {
+      RopeLString rope = new RopeLString(longString);
+      assertEquals("RopeLString(String).toString() is wrong", longString, rope.toString());
+      assertEquals("RopeLString(String).length() is wrong", longString.length(), rope.length());
+      for (int i = 0; i < longString.length(); i += 97)
+         assertEquals("charAt(" + i + ") is wrong", longString.charAt(i), rope.charAt(i));
+   }
+
+   @Test public void test02aSubstringIsNew() {
+      RopeLString rope = new RopeLString(longString);
+      RopeLString sub = rope.substring(10, longString.length() - 10);
+      rope.setCharAt(20, '!');
+      assertEquals("substring is not new RopeLString",
+            longString.substring(10, longString.length() - 10), sub.toString());
+      sub.setCharAt(0, '?');
+      assertEquals("setCharAt on substring changed source",
+            '!', rope.charAt(20));
+      assertEquals("setCharAt on substring changed source",
+            longString.charAt(10), rope.charAt(10));
+   }
+
+   @Test public void test03aReplaceCopies() {
+      RopeLString rope = new RopeLString(longString);
+      RopeLString replacement = new RopeLString("xyzzy");
+      RopeLString result = rope.replace(5, 7, replacement);
+      assertSame("replace returned different RopeLString", rope, result);
+      result.setCharAt(6, '!');
+      assertEquals("replace did not copy replacement", "xyzzy", replacement.toString());
+      assertEquals("replace is wrong",
+            longString.substring(0, 5) + "x!zzy" + longString.substring(7), result.toString());
+   }
+
+   @Test public void test04aCompareToAndEquals() {
+      assertTrue(new RopeLString("B").compareTo(new RopeLString("BB")) < 0);
+      assertTrue(new RopeLString("BB").compareTo(new RopeLString("Ba")) < 0);
+      assertTrue(new RopeLString("Ba").compareTo(new RopeLString("a")) < 0);
+      assertEquals(new RopeLString(longString), new RopeLString(longString));
+      assertEquals(new RopeLString(longString).hashCode(), new RopeLString(longString).hashCode());
+   }
+
+   @Test(expected=IndexOutOfBoundsException.class)
+   public void test05aReplaceOutOfBounds() {
+      new RopeLString("a").replace(0, 2, new RopeLString("b"));
+   }
+
+   @Test public void test06aRandomSplices() {
+      Random random = new Random(42);
+      StringBuilder expected = new StringBuilder(longString);
+      RopeLString rope = new RopeLString(longString);
+      for (int n = 0; n < 2000; n++) {
+         int start = random.nextInt(expected.length() + 1);
+         int end = start + random.nextInt(Math.min(50, expected.length() - start) + 1);
+         String insert = testString.substring(random.nextInt(testString.length()));
+         expected.replace(start, end, insert);
+         rope.replace(start, end, new RopeLString(insert));
+         if (expected.length() > 0) {
+            int index = random.nextInt(expected.length());
+            expected.setCharAt(index, (char)('a' + n % 26));
+            rope.setCharAt(index, (char)('a' + n % 26));
+         }
+      }
+      assertEquals("random splices are wrong", expected.toString(), rope.toString());
+   }
+}